@@ -0,0 +1,225 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontFactory;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/** ベンチマークで使用する PDF を生成します。
+ *
+ * 外部のファイルに依存せずにどの環境でも同じ内容になるように、乱数の種を固定して生成します。
+ * 生成した PDF はバイト列として保持し、同じ JVM の中では再利用します。
+ */
+final class BenchmarkDocuments {
+
+	/** ベンチマークで使用する PDF の種類です。 */
+	enum Kind {
+		/** 欧文のテキストが大部分を占める PDF です。 */
+		TEXT,
+		/** 多数のパスで構成された図面のような PDF です。 */
+		VECTOR,
+		/** 大きな画像が大部分を占める PDF です。 */
+		IMAGE,
+		/** 埋め込まれていない日本語のフォントを使用する PDF です。代替フォントの検索が行われます。 */
+		CJK
+	}
+
+	static final int PAGES = 10;
+
+	private static final Map<Kind, byte[]> documents = new EnumMap<>(Kind.class);
+
+	private BenchmarkDocuments() {
+	}
+
+	static synchronized byte[] get(Kind kind) {
+		return documents.computeIfAbsent(kind, k -> {
+			try {
+				return create(k);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/** PDF を一時ファイルに書き出します。ファイルは JVM の終了時に削除されます。
+	 *
+	 */
+	static File toFile(Kind kind) throws IOException {
+		File file = File.createTempFile("fx-pdf-benchmark-" + kind.name().toLowerCase() + "-", ".pdf");
+		file.deleteOnExit();
+		Files.write(file.toPath(), get(kind));
+		return file;
+	}
+
+	private static byte[] create(Kind kind) throws IOException {
+		Random random = new Random(kind.ordinal());
+		try(PDDocument document = new PDDocument()) {
+			PDFont cjkFont = (kind == Kind.CJK) ? createCjkFont() : null;
+			for(int i = 0; i < PAGES; i++) {
+				PDPage page = new PDPage(PDRectangle.A4);
+				document.addPage(page);
+				switch(kind) {
+				case TEXT:
+					writeText(document, page, random);
+					break;
+				case VECTOR:
+					writeVector(document, page, random);
+					break;
+				case IMAGE:
+					writeImage(document, page, random);
+					break;
+				case CJK:
+					writeCjk(document, page, cjkFont);
+					break;
+				}
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			document.save(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static void writeText(PDDocument document, PDPage page, Random random) throws IOException {
+		try(PDPageContentStream cs = new PDPageContentStream(document, page)) {
+			cs.beginText();
+			cs.setFont(PDType1Font.TIMES_ROMAN, 9);
+			cs.setLeading(11);
+			cs.newLineAtOffset(40, 800);
+			for(int line = 0; line < 68; line++) {
+				StringBuilder sb = new StringBuilder();
+				while(sb.length() < 100) {
+					int length = 2 + random.nextInt(8);
+					for(int c = 0; c < length; c++) {
+						sb.append((char)('a' + random.nextInt(26)));
+					}
+					sb.append(' ');
+				}
+				cs.showText(sb.toString());
+				cs.newLine();
+			}
+			cs.endText();
+		}
+	}
+
+	private static void writeVector(PDDocument document, PDPage page, Random random) throws IOException {
+		PDRectangle box = page.getMediaBox();
+		try(PDPageContentStream cs = new PDPageContentStream(document, page)) {
+			cs.setLineWidth(0.3f);
+			for(int path = 0; path < 500; path++) {
+				cs.setStrokingColor(random.nextFloat(), random.nextFloat(), random.nextFloat());
+				cs.moveTo(random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight());
+				for(int segment = 0; segment < 8; segment++) {
+					cs.curveTo(
+							random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight(),
+							random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight(),
+							random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight());
+				}
+				cs.stroke();
+			}
+		}
+	}
+
+	private static void writeImage(PDDocument document, PDPage page, Random random) throws IOException {
+		BufferedImage image = new BufferedImage(800, 1100, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[image.getWidth()];
+		int color = random.nextInt();
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < row.length; x++) {
+				// 圧縮が効きすぎないように、滑らかな変化にノイズを加えます。
+				row[x] = (color + x * 0x010101 + y * 0x000100 + random.nextInt(16)) & 0xFFFFFF;
+			}
+			image.setRGB(0, y, row.length, 1, row, 0, row.length);
+		}
+		PDImageXObject xobject = LosslessFactory.createFromImage(document, image);
+		PDRectangle box = page.getMediaBox();
+		try(PDPageContentStream cs = new PDPageContentStream(document, page)) {
+			cs.drawImage(xobject, 0, 0, box.getWidth(), box.getHeight());
+		}
+	}
+
+	/** 埋め込まれていない小塚明朝を参照する Type0 フォントを作成します。
+	 *
+	 * レンダリングの際にはシステムにインストールされている日本語のフォントが代わりに使用されます。
+	 */
+	private static PDFont createCjkFont() throws IOException {
+		COSDictionary systemInfo = new COSDictionary();
+		systemInfo.setString(COSName.REGISTRY, "Adobe");
+		systemInfo.setString(COSName.ORDERING, "Japan1");
+		systemInfo.setInt(COSName.SUPPLEMENT, 6);
+
+		COSArray bbox = new COSArray();
+		for(int value : new int[] { -437, -340, 1147, 1317 }) {
+			bbox.add(COSInteger.get(value));
+		}
+		COSDictionary descriptor = new COSDictionary();
+		descriptor.setItem(COSName.TYPE, COSName.FONT_DESC);
+		descriptor.setName(COSName.FONT_NAME, "KozMinPr6N-Regular");
+		descriptor.setInt(COSName.FLAGS, 4);
+		descriptor.setItem(COSName.FONT_BBOX, bbox);
+		descriptor.setInt(COSName.ITALIC_ANGLE, 0);
+		descriptor.setInt(COSName.ASCENT, 880);
+		descriptor.setInt(COSName.DESCENT, -120);
+		descriptor.setInt(COSName.CAP_HEIGHT, 742);
+		descriptor.setInt(COSName.STEM_V, 80);
+
+		COSDictionary descendant = new COSDictionary();
+		descendant.setItem(COSName.TYPE, COSName.FONT);
+		descendant.setItem(COSName.SUBTYPE, COSName.CID_FONT_TYPE0);
+		descendant.setName(COSName.BASE_FONT, "KozMinPr6N-Regular");
+		descendant.setItem(COSName.CIDSYSTEMINFO, systemInfo);
+		descendant.setItem(COSName.FONT_DESC, descriptor);
+		descendant.setInt(COSName.DW, 1000);
+
+		COSArray descendants = new COSArray();
+		descendants.add(descendant);
+		COSDictionary font = new COSDictionary();
+		font.setItem(COSName.TYPE, COSName.FONT);
+		font.setItem(COSName.SUBTYPE, COSName.TYPE0);
+		font.setName(COSName.BASE_FONT, "KozMinPr6N-Regular");
+		font.setName(COSName.ENCODING, "UniJIS-UCS2-H");
+		font.setItem(COSName.DESCENDANT_FONTS, descendants);
+		return PDFontFactory.createFont(font);
+	}
+
+	private static void writeCjk(PDDocument document, PDPage page, PDFont font) throws IOException {
+		// 埋め込まれていないフォントは文字列をエンコードできないため、UCS-2 の文字コードを直接書き込みます。
+		PDResources resources = new PDResources();
+		COSName name = resources.add(font);
+		page.setResources(resources);
+
+		String text = "いろはにほへとちりぬるをわかよたれそつねならむうゐのおくやまけふこえてあさきゆめみしゑひもせす";
+		String hex = new COSString(text.getBytes(StandardCharsets.UTF_16BE)).toHexString();
+		StringBuilder sb = new StringBuilder();
+		sb.append("BT /").append(name.getName()).append(" 10 Tf 12 TL 40 800 Td\n");
+		for(int line = 0; line < 64; line++) {
+			sb.append('<').append(hex).append("> Tj T*\n");
+		}
+		sb.append("ET\n");
+		PDStream contents = new PDStream(document, new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.US_ASCII)));
+		page.setContents(contents);
+	}
+}
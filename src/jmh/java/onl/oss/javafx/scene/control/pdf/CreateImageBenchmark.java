@@ -0,0 +1,64 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** ページをレンダリングしてバッファを作成する処理 ({@link PdfView#createImage}) のベンチマークです。
+ *
+ * 出力する画像の高さを変えて、PDF の種類ごとにレンダリングにかかる時間を測定します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CreateImageBenchmark {
+
+	@Param({ "TEXT", "VECTOR", "IMAGE", "CJK" })
+	public String kind;
+
+	/** 出力する画像の高さ（ピクセル）です。幅は A4 の縦横比から決まります。 */
+	@Param({ "800", "1600", "3200" })
+	public int height;
+
+	private PDDocument document;
+	private RenderBufferPool pool;
+	private int width;
+	private int pageIndex;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		document = PDDocument.load(BenchmarkDocuments.get(BenchmarkDocuments.Kind.valueOf(kind)));
+		pool = new RenderBufferPool(256L * 1024L * 1024L);
+		width = (int)(height * 210.0 / 297.0);
+
+		// フォントの読み込みを測定に含めないように、すべてのページを一度レンダリングしておきます。
+		for(int i = 0; i < document.getNumberOfPages(); i++) {
+			PdfView.createImage(pool, document, i, null, width, height, false, () -> false).release();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		document.close();
+	}
+
+	@Benchmark
+	public int createImage() {
+		pageIndex = (pageIndex + 1) % document.getNumberOfPages();
+		RenderBuffer buffer = PdfView.createImage(pool, document, pageIndex, null, width, height, false, () -> false);
+		int pixel = buffer.getPixels()[0];
+		buffer.release();
+		return pixel;
+	}
+}
@@ -0,0 +1,53 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** フォントを事前に読み込む処理 ({@link FontWarmUp}) のベンチマークです。
+ *
+ * 読み込んだフォントは PDDocument にキャッシュされるため、測定のたびにドキュメントを読み込み直します。
+ * システムのフォントの走査は最初の 1 回だけ行われるため、ウォームアップの期間に含まれます。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FontWarmUpBenchmark {
+
+	@Param({ "TEXT", "CJK" })
+	public String kind;
+
+	private PDDocument document;
+
+	@Setup(Level.Invocation)
+	public void setUp() throws IOException {
+		document = PDDocument.load(BenchmarkDocuments.get(BenchmarkDocuments.Kind.valueOf(kind)));
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws IOException {
+		document.close();
+	}
+
+	@Benchmark
+	public int warmUp() {
+		Set<COSBase> visited = FontWarmUp.createVisitedSet();
+		for(int i = 0; i < document.getNumberOfPages(); i++) {
+			FontWarmUp.warmUp(document, i, visited);
+		}
+		return visited.size();
+	}
+}
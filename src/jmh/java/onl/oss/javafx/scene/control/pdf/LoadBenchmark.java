@@ -0,0 +1,71 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/** ファイルからドキュメントを読み込む処理のベンチマークです。
+ *
+ * PdfView.load(File) が使用するバイト列からの読み込み、ストリームからの読み込み、
+ * メモリマップトファイルからの読み込みを比較します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadBenchmark {
+
+	@Param({ "TEXT", "VECTOR", "IMAGE", "CJK" })
+	public String kind;
+
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = BenchmarkDocuments.toFile(BenchmarkDocuments.Kind.valueOf(kind));
+	}
+
+	/** ファイルの内容をバイト列として読み込んでから解析します。PdfView.load(File) の既定の方法です。 */
+	@Benchmark
+	public int bytes() throws IOException {
+		byte[] input;
+		try(InputStream is = new FileInputStream(file)) {
+			input = is.readAllBytes();
+		}
+		try(PDDocument document = PDDocument.load(input)) {
+			return document.getNumberOfPages();
+		}
+	}
+
+	/** ストリームから解析します。PdfView.load(InputStream) の方法です。 */
+	@Benchmark
+	public int stream() throws IOException {
+		try(InputStream is = new BufferedInputStream(new FileInputStream(file));
+				PDDocument document = PDDocument.load(is)) {
+			return document.getNumberOfPages();
+		}
+	}
+
+	/** 一時ファイルに複製してメモリにマップしてから解析します。PdfView.setMemoryMapping(true) の方法です。 */
+	@Benchmark
+	public int mapped() throws IOException {
+		MappedFile mapped = MappedFile.snapshot(file, bytes -> {});
+		try(PDDocument document = PdfView.load(mapped.newReader(), "", null, null, MemoryUsageSetting.setupMainMemoryOnly())) {
+			return document.getNumberOfPages();
+		}
+	}
+}
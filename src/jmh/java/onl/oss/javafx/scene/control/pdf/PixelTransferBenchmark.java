@@ -0,0 +1,65 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/** レンダリングした画像を JavaFX の画像にする処理のベンチマークです。
+ *
+ * 以前の実装で使用していた SwingFXUtils.toFXImage によるコピーと、
+ * 現在の実装で使用している BufferedImage とピクセルを共有する {@link RenderBuffer} を比較します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PixelTransferBenchmark {
+
+	@Param({ "800", "1600", "3200" })
+	public int height;
+
+	private int width;
+	private BufferedImage rendered;
+	private RenderBufferPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		width = (int)(height * 210.0 / 297.0);
+		rendered = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D graphics = rendered.createGraphics();
+		try {
+			graphics.setBackground(Color.WHITE);
+			graphics.clearRect(0, 0, width, height);
+		} finally {
+			graphics.dispose();
+		}
+		pool = new RenderBufferPool(256L * 1024L * 1024L);
+	}
+
+	/** 描画した BufferedImage を JavaFX の画像にコピーします。 */
+	@Benchmark
+	public WritableImage swingFXUtils() {
+		return SwingFXUtils.toFXImage(rendered, null);
+	}
+
+	/** プールからピクセルを共有するバッファを取得します。描画した時点で JavaFX の画像になっているため、コピーは発生しません。 */
+	@Benchmark
+	public WritableImage sharedBuffer() {
+		RenderBuffer buffer = pool.acquire(width, height);
+		WritableImage image = buffer.getImage();
+		buffer.release();
+		return image;
+	}
+}
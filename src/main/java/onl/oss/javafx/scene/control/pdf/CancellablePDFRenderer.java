@@ -0,0 +1,94 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDPattern;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDTilingPattern;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+
+import java.awt.Paint;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/** 途中で取り消すことのできる PDFRenderer です。
+ *
+ * コンテンツストリームの演算子を処理するたびに取り消されたかどうかを確認し、
+ * 取り消されていれば CancellationException をスローしてレンダリングを中断します。
+ *
+ * また、描画する倍率で画像にしてから合成する要素（透明グループ、ソフトマスク、タイリングパターン）を含むページを
+ * {@link #isScaleDependent()} で判別できます。このようなページは {@link DisplayList} に記録しても別の倍率で正しく再生できません。
+ *
+ * ドキュメントに {@link SharedResourceCache} が設定されている場合は、デコードした画像をそこから取得します。
+ */
+final class CancellablePDFRenderer extends PDFRenderer {
+
+	private final BooleanSupplier cancelled;
+	private boolean scaleDependent;
+
+	CancellablePDFRenderer(PDDocument document, BooleanSupplier cancelled) {
+		super(document);
+		this.cancelled = cancelled;
+	}
+
+	/** これまでにレンダリングしたページが、描画する倍率で画像にしてから合成する要素を含んでいたかどうかを返します。
+	 *
+	 * @return 倍率に依存する要素を含んでいた場合は true。
+	 */
+	boolean isScaleDependent() {
+		return scaleDependent;
+	}
+
+	@Override
+	protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+		return new CancellablePageDrawer(parameters);
+	}
+
+	private final class CancellablePageDrawer extends PageDrawer {
+
+		private CancellablePageDrawer(PageDrawerParameters parameters) throws IOException {
+			super(parameters);
+		}
+
+		@Override
+		protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+			// IOException ではないため、フォーム XObject の中で取り消された場合も握りつぶされずに伝播します。
+			if(cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			if(getGraphicsState().getSoftMask() != null) {
+				scaleDependent = true;
+			}
+			super.processOperator(operator, operands);
+		}
+
+		@Override
+		protected Paint getPaint(PDColor color) throws IOException {
+			if(color.getColorSpace() instanceof PDPattern
+					&& ((PDPattern)color.getColorSpace()).getPattern(color) instanceof PDTilingPattern) {
+				scaleDependent = true;
+			}
+			return super.getPaint(color);
+		}
+
+		@Override
+		public void drawImage(PDImage pdImage) throws IOException {
+			ResourceCache cache = document.getResourceCache();
+			super.drawImage((cache instanceof SharedResourceCache) ? ((SharedResourceCache)cache).wrap(pdImage) : pdImage);
+		}
+
+		@Override
+		public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+			scaleDependent = true;
+			super.showTransparencyGroup(form);
+		}
+	}
+}
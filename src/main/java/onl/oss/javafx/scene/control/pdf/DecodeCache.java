@@ -0,0 +1,248 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/** デコードした画像と解析したフォントを、おおよそのバイト数の上限付きで保持する LRU キャッシュです。
+ *
+ * 画像とフォントは間接オブジェクトの番号で識別します。
+ * 画像のピクセルは同じファイルから開き直したドキュメントでも同じになるため、元のドキュメントごとに保持し、
+ * レンダリングを行うすべてのスレッドで共有します。
+ * フォントは PDDocument に結び付いていてスレッドセーフではないため、スレッドごとに開き直したドキュメントごとに保持します。
+ * 上限に対して大きすぎる画像やフォント（CJK のフォントなど）は、バイト数に数えずに SoftReference で保持し、
+ * PDFBox の既定の ResourceCache と同じくメモリが不足したときに破棄されるようにします。
+ * スレッドセーフです。
+ */
+final class DecodeCache {
+
+	/** フォントのファイルを持たないフォントのおおよそのバイト数です。 */
+	private static final long FONT_BYTES = 16L * 1024L;
+
+	/** 1 つの画像やフォントに使用できるバイト数の、キャッシュのサイズに対する割合の逆数です。 */
+	private static final int MAX_ENTRY_RATIO = 4;
+
+	private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+	/** LRU に格納するには大きすぎる画像とフォントです。 */
+	private final Map<Key, SoftReference<Object>> large = new HashMap<>();
+	private long maxBytes;
+	private long bytes;
+	private long imageHits;
+	private long imageMisses;
+	private long fontHits;
+	private long fontMisses;
+	private long evictions;
+
+	DecodeCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	synchronized ResourceCacheStatistics getStatistics() {
+		return new ResourceCacheStatistics(imageHits, imageMisses, fontHits, fontMisses, evictions, bytes, maxBytes);
+	}
+
+	/** キャッシュにある画像を返すか、画像をデコードしてキャッシュに格納します。
+	 *
+	 * デコードはロックの外で行うため、同じ画像を複数のスレッドが同時にデコードすることがあります。
+	 *
+	 * @param source 元のドキュメント。
+	 * @param objectNumber 画像の間接オブジェクトの番号。
+	 * @param generation 画像の間接オブジェクトの世代番号。
+	 * @param subsampling 間引きの間隔。
+	 * @param decoder 画像をデコードする処理。呼び出し元のドキュメントを使用します。
+	 * @return 画像。複数のスレッドで共有するため、変更してはいけません。
+	 * @throws IOException 画像をデコードできなかった場合。
+	 */
+	BufferedImage getImage(PDDocument source, long objectNumber, int generation, int subsampling, ImageDecoder decoder) throws IOException {
+		Key key = new Key(source, null, objectNumber, generation, subsampling);
+		synchronized (this) {
+			Object value = lookup(key);
+			if(value != null) {
+				imageHits++;
+				return (BufferedImage)value;
+			}
+			imageMisses++;
+		}
+		BufferedImage image = decoder.decode();
+		if(image != null) {
+			put(key, image, getBytes(image));
+		}
+		return image;
+	}
+
+	/** キャッシュにあるフォントを返します。
+	 *
+	 * @param source 元のドキュメント。
+	 * @param instance フォントを使用するドキュメント。
+	 * @param objectNumber フォントの間接オブジェクトの番号。
+	 * @param generation フォントの間接オブジェクトの世代番号。
+	 * @return フォント。キャッシュにない場合は null。
+	 */
+	synchronized PDFont getFont(PDDocument source, PDDocument instance, long objectNumber, int generation) {
+		Object value = lookup(new Key(source, instance, objectNumber, generation, 0));
+		if(value != null) {
+			fontHits++;
+			return (PDFont)value;
+		}
+		fontMisses++;
+		return null;
+	}
+
+	void putFont(PDDocument source, PDDocument instance, long objectNumber, int generation, PDFont font) {
+		put(new Key(source, instance, objectNumber, generation, 0), font, getBytes(font));
+	}
+
+	private Object lookup(Key key) {
+		Entry entry = map.get(key);
+		if(entry != null) {
+			return entry.value;
+		}
+		SoftReference<Object> ref = large.get(key);
+		return (ref != null) ? ref.get() : null;
+	}
+
+	private synchronized void put(Key key, Object value, long size) {
+		if(size > maxBytes / MAX_ENTRY_RATIO) {
+			// 破棄された参照はここでまとめて取り除きます。
+			large.values().removeIf(ref -> ref.get() == null);
+			large.put(key, new SoftReference<>(value));
+			Entry old = map.remove(key);
+			if(old != null) {
+				bytes -= old.bytes;
+			}
+			return;
+		}
+		large.remove(key);
+		Entry old = map.put(key, new Entry(value, size));
+		if(old != null) {
+			bytes -= old.bytes;
+		}
+		bytes += size;
+		trim();
+	}
+
+	/** 指定したドキュメントと、そのドキュメントから開き直したドキュメントの画像とフォントをすべて破棄します。
+	 *
+	 * @param source 元のドキュメント。
+	 */
+	synchronized void remove(PDDocument source) {
+		Iterator<Map.Entry<Key, Entry>> it = map.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			if(e.getKey().source == source) {
+				bytes -= e.getValue().bytes;
+				it.remove();
+			}
+		}
+		large.keySet().removeIf(key -> key.source == source);
+	}
+
+	private void trim() {
+		Iterator<Entry> it = map.values().iterator();
+		while(bytes > maxBytes && it.hasNext()) {
+			bytes -= it.next().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static long getBytes(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long)buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8L;
+	}
+
+	/** フォントのおおよそのバイト数を返します。埋め込まれたフォントのファイルの大きさから見積もります。
+	 *
+	 */
+	private static long getBytes(PDFont font) {
+		long size = FONT_BYTES;
+		PDFontDescriptor descriptor = font.getFontDescriptor();
+		if(descriptor != null) {
+			for(PDStream stream : new PDStream[] { descriptor.getFontFile(), descriptor.getFontFile2(), descriptor.getFontFile3() }) {
+				if(stream != null) {
+					size += 2L * Math.max(0L, stream.getCOSObject().getLength());
+				}
+			}
+		}
+		return size;
+	}
+
+	/** 画像をデコードする処理です。 */
+	@FunctionalInterface
+	interface ImageDecoder {
+		BufferedImage decode() throws IOException;
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long bytes;
+
+		private Entry(Object value, long bytes) {
+			this.value = value;
+			this.bytes = bytes;
+		}
+	}
+
+	/** キャッシュのキーです。ドキュメントは同一性で比較します。
+	 *
+	 * 画像は instance を null にして元のドキュメントごとに、フォントは開き直したドキュメントごとに識別します。
+	 */
+	private static final class Key {
+		private final PDDocument source;
+		private final PDDocument instance;
+		private final long objectNumber;
+		private final int generation;
+		private final int subsampling;
+		private final int hashCode;
+
+		private Key(PDDocument source, PDDocument instance, long objectNumber, int generation, int subsampling) {
+			this.source = source;
+			this.instance = instance;
+			this.objectNumber = objectNumber;
+			this.generation = generation;
+			this.subsampling = subsampling;
+			this.hashCode = Objects.hash(System.identityHashCode(source), System.identityHashCode(instance), objectNumber, generation, subsampling);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return source == other.source
+					&& instance == other.instance
+					&& objectNumber == other.objectNumber
+					&& generation == other.generation
+					&& subsampling == other.subsampling;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
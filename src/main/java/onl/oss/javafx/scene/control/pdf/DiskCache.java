@@ -0,0 +1,439 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.awt.RenderingHints;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** レンダリング済みのページ画像をディスクに保存するキャッシュです。
+ *
+ * 画像は PDF の内容のハッシュ値、ページ番号、画像の大きさ、レンダリングヒントをキーとして、
+ * 乗算済み ARGB のピクセルを Deflate で圧縮したファイルとして保存します。
+ * 同じ内容の PDF であれば、ファイルの場所や名前が変わっても、アプリケーションを再起動してもキャッシュが使用されます。
+ * ドキュメントの内容のハッシュ値はすべての DiskCache で共有するため、PdfView で読み込んだドキュメントのサムネイルも
+ * {@link ThumbnailPane} のディスクキャッシュに保存されます。サムネイルはページ画像とは別のファイル名で保存します。
+ * 合計サイズが上限を超えた場合は最も長く参照されていないファイルから削除します。
+ * ファイルへの書き込みは RenderService の入出力用の Executor で行うため、レンダリングを待たせることはありません。
+ * スレッドセーフです。
+ */
+final class DiskCache {
+
+	private static final String SUFFIX = ".page";
+	private static final String THUMBNAIL = "-thumbnail";
+	private static final String TEMP_PREFIX = "fx-pdf-";
+	private static final String TEMP_SUFFIX = ".tmp";
+	/** 書き込みの途中で残されたとみなす一時ファイルの経過時間（ミリ秒）です。 */
+	private static final long STALE_TEMP_MILLIS = 60L * 60L * 1000L;
+	private static final int MAGIC = 0x46585044; // "FXPD"
+
+	/** ドキュメントの内容のハッシュ値です。ドキュメントが参照されなくなると取り除かれます。 */
+	private static final Map<PDDocument, String> contentHashes = new WeakHashMap<>();
+
+	/** DiskCache が作成されたことがある場合は true です。作成されるまでドキュメントのハッシュ値は計算しません。 */
+	private static volatile boolean used;
+
+	private final File directory;
+	private final Executor writer;
+	/** ファイル名とサイズです。参照された順に並びます。 */
+	private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+	private long maxBytes;
+	private long bytes;
+	private boolean scanned;
+
+	/** ディスクキャッシュを作成します。
+	 *
+	 * @param directory 画像を保存するディレクトリ。
+	 * @param maxBytes 保存するファイルの合計サイズの上限（バイト）。
+	 * @param writer ファイルへの書き込みを実行する Executor。
+	 */
+	DiskCache(File directory, long maxBytes, Executor writer) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.writer = writer;
+		used = true;
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+	synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		if(scanned) {
+			trim();
+		}
+	}
+
+	/** PDF の内容のハッシュ値を計算します。
+	 *
+	 * @param input PDF の内容。
+	 * @return ハッシュ値の 16 進数表記。
+	 */
+	static String hash(byte[] input) {
+		MessageDigest digest = createDigest();
+		digest.update(input);
+		return toHex(digest.digest());
+	}
+
+	/** PDF の内容のハッシュ値を計算します。
+	 *
+	 * @param input PDF の内容を読み込むストリーム。ストリームは閉じません。
+	 * @return ハッシュ値の 16 進数表記。
+	 * @throws IOException 入出力エラーが発生した場合。
+	 */
+	static String hash(InputStream input) throws IOException {
+		MessageDigest digest = createDigest();
+		byte[] buffer = new byte[64 * 1024];
+		int n;
+		while((n = input.read(buffer)) != -1) {
+			digest.update(buffer, 0, n);
+		}
+		return toHex(digest.digest());
+	}
+
+	static boolean isUsed() {
+		return used;
+	}
+
+	/** ドキュメントの内容のハッシュ値を登録します。登録されていないドキュメントはキャッシュされません。
+	 *
+	 * 登録はすべての DiskCache で共有され、ドキュメントが参照されなくなると取り除かれます。
+	 *
+	 * @param document ドキュメント。
+	 * @param contentHash {@link #hash(byte[])} で計算したハッシュ値。
+	 */
+	static void register(PDDocument document, String contentHash) {
+		synchronized (contentHashes) {
+			contentHashes.put(document, contentHash);
+		}
+	}
+
+	/** キャッシュに画像があるかもしれない場合は true を返します。
+	 *
+	 * ファイルを読み込まないため、FXアプリケーションスレッドから呼び出すことができます。
+	 * まだディレクトリのファイルを読み込んでいない場合は true を返します。
+	 *
+	 * @param key キー。ページ全体の画像のキーである必要があります。
+	 * @return 画像があるかもしれない場合は true。
+	 */
+	boolean mayContain(RenderCache.Key key) {
+		return mayContain(getFileName(key, ""));
+	}
+
+	/** キャッシュにサムネイルがあるかもしれない場合は true を返します。
+	 *
+	 * @param key サムネイルの枠の大きさのキー。
+	 * @return サムネイルがあるかもしれない場合は true。
+	 * @see #mayContain(RenderCache.Key)
+	 */
+	boolean mayContainThumbnail(RenderCache.Key key) {
+		return mayContain(getFileName(key, THUMBNAIL));
+	}
+
+	private boolean mayContain(String name) {
+		if(name == null) {
+			return false;
+		}
+		synchronized (this) {
+			return !scanned || files.containsKey(name);
+		}
+	}
+
+	/** キャッシュから画像を読み込みます。
+	 *
+	 * ファイルの読み込みと展開を行うため、入出力用のスレッドで呼び出します。
+	 *
+	 * @param key キー。ページ全体の画像のキーである必要があります。
+	 * @param pool バッファを取得するプール。
+	 * @return 画像を読み込んだバッファ。キャッシュにない場合は null。
+	 */
+	RenderBuffer get(RenderCache.Key key, RenderBufferPool pool) {
+		return read(getFileName(key, ""), key, pool);
+	}
+
+	/** キャッシュからサムネイルを読み込みます。
+	 *
+	 * サムネイルはページの縦横比に合わせて枠より小さいことがあるため、保存したときの大きさで読み込みます。
+	 *
+	 * @param key サムネイルの枠の大きさのキー。
+	 * @param pool バッファを取得するプール。
+	 * @return サムネイルを読み込んだバッファ。キャッシュにない場合は null。
+	 */
+	RenderBuffer getThumbnail(RenderCache.Key key, RenderBufferPool pool) {
+		return read(getFileName(key, THUMBNAIL), key, pool);
+	}
+
+	private RenderBuffer read(String name, RenderCache.Key key, RenderBufferPool pool) {
+		if(name == null) {
+			return null;
+		}
+		synchronized (this) {
+			scan();
+			if(files.get(name) == null) {
+				return null;
+			}
+		}
+
+		File file = new File(directory, name);
+		RenderBuffer buffer = null;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file.toPath()))))) {
+			if(in.readInt() != MAGIC) {
+				throw new IOException("Invalid cache file: " + file);
+			}
+			int width = in.readInt();
+			int height = in.readInt();
+			// ページ画像はキーと同じ大きさで、サムネイルはキーの枠に収まる大きさで保存されています。
+			if(width <= 0 || height <= 0 || width > key.getWidth() || height > key.getHeight()) {
+				throw new IOException("Invalid cache file: " + file);
+			}
+			buffer = pool.acquire(width, height);
+			int[] pixels = buffer.getPixels();
+			int scanline = buffer.getCapacityWidth();
+			byte[] row = new byte[width * 4];
+			IntBuffer ints = ByteBuffer.wrap(row).asIntBuffer();
+			for(int y = 0; y < height; y++) {
+				in.readFully(row);
+				ints.rewind();
+				ints.get(pixels, y * scanline, width);
+			}
+		} catch(IOException e) {
+			if(buffer != null) {
+				buffer.release();
+			}
+			remove(name);
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+		} catch(IOException ignore) {
+		}
+		return buffer;
+	}
+
+	/** 画像をキャッシュに保存します。保存は書き込み用の Executor で行われます。
+	 *
+	 * 保存が終わるまでバッファの参照を保持します。
+	 *
+	 * @param key キー。ページ全体の画像のキーである必要があります。
+	 * @param buffer 保存する画像。
+	 */
+	void put(RenderCache.Key key, RenderBuffer buffer) {
+		write(getFileName(key, ""), key, buffer);
+	}
+
+	/** サムネイルをキャッシュに保存します。保存は書き込み用の Executor で行われます。
+	 *
+	 * @param key サムネイルの枠の大きさのキー。
+	 * @param buffer 保存するサムネイル。
+	 */
+	void putThumbnail(RenderCache.Key key, RenderBuffer buffer) {
+		write(getFileName(key, THUMBNAIL), key, buffer);
+	}
+
+	private void write(String name, RenderCache.Key key, RenderBuffer buffer) {
+		if(name == null) {
+			return;
+		}
+		synchronized (this) {
+			if(files.containsKey(name) || (long)key.getWidth() * key.getHeight() * 4L > maxBytes) {
+				return;
+			}
+		}
+		buffer.retain();
+		writer.execute(() -> {
+			try {
+				writeFile(name, buffer);
+			} finally {
+				buffer.release();
+			}
+		});
+	}
+
+	private void writeFile(String name, RenderBuffer buffer) {
+		Path temp = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			temp = Files.createTempFile(directory.toPath(), TEMP_PREFIX, TEMP_SUFFIX);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try(OutputStream os = Files.newOutputStream(temp);
+					DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(os), deflater))) {
+				int width = buffer.getWidth();
+				int height = buffer.getHeight();
+				out.writeInt(MAGIC);
+				out.writeInt(width);
+				out.writeInt(height);
+				int[] pixels = buffer.getPixels();
+				int scanline = buffer.getCapacityWidth();
+				byte[] row = new byte[width * 4];
+				IntBuffer ints = ByteBuffer.wrap(row).asIntBuffer();
+				for(int y = 0; y < height; y++) {
+					ints.rewind();
+					ints.put(pixels, y * scanline, width);
+					out.write(row);
+				}
+			} finally {
+				deflater.end();
+			}
+			Path target = new File(directory, name).toPath();
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+			synchronized (this) {
+				scan();
+				Long old = files.put(name, Files.size(target));
+				if(old != null) {
+					bytes -= old;
+				}
+				bytes += files.get(name);
+				trim();
+			}
+		} catch(IOException ignore) {
+			// キャッシュに保存できなくても表示には影響しません。
+		} finally {
+			if(temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch(IOException ignore) {
+				}
+			}
+		}
+	}
+
+	private synchronized void remove(String name) {
+		Long size = files.remove(name);
+		if(size != null) {
+			bytes -= size;
+		}
+		new File(directory, name).delete();
+	}
+
+	/** 最初に使用するときにディレクトリにあるファイルを更新日時の順に読み込みます。
+	 *
+	 */
+	private void scan() {
+		if(scanned) {
+			return;
+		}
+		scanned = true;
+		// 書き込みの途中でプロセスが終了すると一時ファイルが残り、合計サイズに数えられないまま増えていくため削除します。
+		// 別のプロセスが書き込み中の一時ファイルを削除しないように、古いものだけを削除します。
+		File[] temps = directory.listFiles((dir, name) -> name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX));
+		if(temps != null) {
+			long expired = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+			for(File temp : temps) {
+				if(temp.lastModified() < expired) {
+					temp.delete();
+				}
+			}
+		}
+		File[] list = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if(list == null) {
+			return;
+		}
+		List<File> sorted = new ArrayList<>(Arrays.asList(list));
+		sorted.sort(Comparator.comparingLong(File::lastModified));
+		for(File file : sorted) {
+			long size = file.length();
+			files.put(file.getName(), size);
+			bytes += size;
+		}
+		trim();
+	}
+
+	private void trim() {
+		Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+		while(bytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			bytes -= entry.getValue();
+			new File(directory, entry.getKey()).delete();
+			it.remove();
+		}
+	}
+
+	private static String getFileName(RenderCache.Key key, String kind) {
+		String contentHash;
+		synchronized (contentHashes) {
+			contentHash = contentHashes.get(key.getDocument());
+		}
+		if(contentHash == null) {
+			return null;
+		}
+		return contentHash + "-" + key.getPageIndex() + "-" + key.getWidth() + "x" + key.getHeight()
+				+ "-" + hintsHash(key.getHints()) + kind + SUFFIX;
+	}
+
+	/** レンダリングヒントのハッシュ値を返します。
+	 *
+	 * RenderingHints.Key のハッシュ値は実行するたびに変わるため、キーと値の文字列表現から計算します。
+	 */
+	private static String hintsHash(RenderingHints hints) {
+		if(hints == null) {
+			return "default";
+		}
+		List<String> entries = new ArrayList<>();
+		for(Map.Entry<Object, Object> entry : hints.entrySet()) {
+			entries.add(entry.getKey() + "=" + entry.getValue());
+		}
+		entries.sort(null);
+		MessageDigest digest = createDigest();
+		for(String entry : entries) {
+			digest.update(entry.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+		}
+		return toHex(digest.digest()).substring(0, 16);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			// SHA-256 はすべての Java 実装で利用できます。
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,791 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.IOException;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/** ページの描画命令を記録したディスプレイリストです。
+ *
+ * PDFBox が Graphics2D に対して行った描画（座標を解決したパス、グリフの輪郭、デコード済みの画像と、その時点の描画状態）を記録し、
+ * 任意の倍率で Graphics2D に再生します。再生ではコンテンツストリームの解析やフォントの読み込みを行わないため、
+ * 拡大や縮小で同じページをレンダリングし直す場合に、解析に時間のかかるページほど速くなります。
+ * 透明グループ、ソフトマスク、タイリングパターンのように PDFBox が描画する倍率で画像にしてから合成する要素を含むページは、
+ * 別の倍率で再生すると粗くなるため記録しません。
+ * 再生は複数のスレッドから同時に行えます。
+ */
+final class DisplayList {
+
+	/** 取り消されたかどうかを確認する間隔（描画命令の数）です。 */
+	private static final int CANCEL_CHECK_INTERVAL = 256;
+
+	/** 描画命令 1 つあたりのおおよそのバイト数です。 */
+	private static final long OP_BYTES = 48L;
+
+	private final float scale;
+	private final State[] states;
+	private final Op[] ops;
+	private final long bytes;
+	/** 描画に PDFBox のシェーディングのようにドキュメントを参照する Paint を含む場合は、記録したドキュメントです。 */
+	private final PDDocument document;
+
+	private DisplayList(float scale, State[] states, Op[] ops, long bytes, PDDocument document) {
+		this.scale = scale;
+		this.states = states;
+		this.ops = ops;
+		this.bytes = bytes;
+		this.document = document;
+	}
+
+	/** ページをレンダリングして描画命令を記録します。
+	 *
+	 * 呼び出し元で PDDocument を排他制御する必要があります。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex ページ番号。
+	 * @param scale 記録する倍率。
+	 * @param hints レンダリングヒント。null の場合は PDFBox の既定値を使用します。
+	 * @param maxBytes 記録する描画命令のおおよそのバイト数の上限。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @return ディスプレイリスト。記録できないページの場合は null。
+	 * @throws IOException ページを読み込めなかった場合。
+	 * @throws CancellationException 取り消された場合。
+	 */
+	static DisplayList record(PDDocument document, int pageIndex, float scale, RenderingHints hints, long maxBytes, BooleanSupplier cancelled) throws IOException {
+		CancellablePDFRenderer renderer = new CancellablePDFRenderer(document, cancelled);
+		if(hints != null) {
+			renderer.setRenderingHints(hints);
+		}
+		Builder builder = new Builder(maxBytes);
+		Recorder recorder = new Recorder(builder, new State());
+		renderer.renderPageToGraphics(pageIndex, recorder, scale);
+		if(builder.unsupported || builder.overflow || renderer.isScaleDependent()) {
+			return null;
+		}
+		int size = builder.ops.size();
+		return new DisplayList(scale,
+				builder.states.toArray(new State[size]),
+				builder.ops.toArray(new Op[size]),
+				builder.bytes,
+				builder.documentBound ? document : null);
+	}
+
+	/** 記録した描画命令のおおよそのバイト数を返します。
+	 *
+	 */
+	long getBytes() {
+		return bytes;
+	}
+
+	/** 指定したドキュメントを排他制御している間に再生できるかどうかを返します。
+	 *
+	 * ドキュメントを参照する Paint を含む場合は、記録したドキュメントを排他制御している間だけ再生できます。
+	 *
+	 * @param instance 排他制御しているドキュメント。
+	 * @return 再生できる場合は true。
+	 */
+	boolean isReplayable(PDDocument instance) {
+		return document == null || document == instance;
+	}
+
+	/** 描画命令を再生します。
+	 *
+	 * Graphics2D の変換、クリップ、背景色は再生する前の状態に戻します。
+	 * 記録したときに背景色が設定されていなかった場合、PDFBox がページを消去する領域は描画先の背景色で塗りつぶされます。
+	 *
+	 * @param graphics 描画先。
+	 * @param scale 再生する倍率。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @throws CancellationException 取り消された場合。
+	 */
+	void replay(Graphics2D graphics, float scale, BooleanSupplier cancelled) {
+		AffineTransform origin = graphics.getTransform();
+		Shape originClip = graphics.getClip();
+		Color originBackground = graphics.getBackground();
+		double ratio = (double)scale / this.scale;
+		State applied = null;
+		try {
+			for(int i = 0; i < ops.length; i++) {
+				if(i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+					throw new CancellationException();
+				}
+				State state = states[i];
+				if(state != applied) {
+					graphics.setTransform(origin);
+					graphics.setClip(originClip);
+					graphics.scale(ratio, ratio);
+					if(state.clip != null) {
+						graphics.clip(state.clip);
+					}
+					graphics.transform(state.transform);
+					graphics.setRenderingHints(state.hints);
+					graphics.setPaint(state.paint);
+					graphics.setStroke(state.stroke);
+					graphics.setComposite(state.composite);
+					graphics.setBackground((state.background != null) ? state.background : originBackground);
+					applied = state;
+				}
+				ops[i].draw(graphics);
+			}
+		} finally {
+			graphics.setTransform(origin);
+			graphics.setClip(originClip);
+			graphics.setBackground(originBackground);
+		}
+	}
+
+	/** 描画命令です。 */
+	@FunctionalInterface
+	private interface Op {
+		void draw(Graphics2D graphics);
+	}
+
+	/** 描画命令を実行するときの描画状態です。
+	 *
+	 * 描画命令から参照された後は変更せず、次に状態が変わるときに複製します。
+	 * クリップは記録したときのデバイス座標で保持します。
+	 */
+	private static final class State {
+		private AffineTransform transform = new AffineTransform();
+		private Shape clip;
+		private Paint paint = Color.WHITE;
+		private Color color = Color.WHITE;
+		private Stroke stroke = new BasicStroke();
+		private Composite composite = AlphaComposite.SrcOver;
+		private RenderingHints hints = new RenderingHints(null);
+		/** 背景色です。設定されていない場合は null で、再生するときに描画先の背景色を使用します。 */
+		private Color background;
+		private Font font = new Font(Font.DIALOG, Font.PLAIN, 12);
+
+		private State copy() {
+			State s = new State();
+			s.transform = new AffineTransform(transform);
+			s.clip = clip;
+			s.paint = paint;
+			s.color = color;
+			s.stroke = stroke;
+			s.composite = composite;
+			s.hints = (RenderingHints)hints.clone();
+			s.background = background;
+			s.font = font;
+			return s;
+		}
+	}
+
+	/** 記録中の描画命令です。Graphics2D.create で作成したものも含めて共有します。 */
+	private static final class Builder {
+		private final long maxBytes;
+		private final List<State> states = new ArrayList<>();
+		private final List<Op> ops = new ArrayList<>();
+		private final Set<Image> images = Collections.newSetFromMap(new IdentityHashMap<>());
+		private long bytes;
+		/** 記録できない描画が行われた場合は true です。 */
+		private boolean unsupported;
+		/** バイト数が上限を超えた場合は true です。それ以降の描画命令は記録しません。 */
+		private boolean overflow;
+		private boolean documentBound;
+
+		private Builder(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		private void add(State state, Op op, long size) {
+			if(overflow) {
+				return;
+			}
+			bytes += OP_BYTES + size;
+			if(bytes > maxBytes) {
+				overflow = true;
+				states.clear();
+				ops.clear();
+				images.clear();
+				return;
+			}
+			states.add(state);
+			ops.add(op);
+		}
+	}
+
+	/** 描画命令を記録する Graphics2D です。
+	 *
+	 * 描画状態の変更は記録せず、描画するときにその時点の状態とともに記録します。
+	 * 文字列とグリフは輪郭に変換して記録します。
+	 */
+	private static final class Recorder extends Graphics2D {
+
+		/** フォントの情報やデバイスの情報を返すために使用する Graphics2D です。 */
+		private static final Graphics2D SCRATCH = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE).createGraphics();
+
+		private final Builder builder;
+		private State state;
+		/** 状態が描画命令や別の Recorder から参照されているかどうかです。参照されている場合は変更する前に複製します。 */
+		private boolean shared;
+
+		private Recorder(Builder builder, State state) {
+			this.builder = builder;
+			this.state = state;
+		}
+
+		/** 変更するための状態を返します。
+		 *
+		 */
+		private State mutate() {
+			if(shared) {
+				state = state.copy();
+				shared = false;
+			}
+			return state;
+		}
+
+		private void add(Op op, long size) {
+			shared = true;
+			builder.add(state, op, size);
+		}
+
+		/** PDFBox は同じ GeneralPath を再利用するため、パスを複製して記録します。
+		 *
+		 */
+		private void add(Shape shape, boolean fill) {
+			Path2D.Float path = new Path2D.Float();
+			PathIterator it = shape.getPathIterator(null);
+			path.setWindingRule(it.getWindingRule());
+			float[] c = new float[6];
+			long size = 0L;
+			for(; !it.isDone(); it.next()) {
+				switch(it.currentSegment(c)) {
+				case PathIterator.SEG_MOVETO:
+					path.moveTo(c[0], c[1]);
+					size += 9;
+					break;
+				case PathIterator.SEG_LINETO:
+					path.lineTo(c[0], c[1]);
+					size += 9;
+					break;
+				case PathIterator.SEG_QUADTO:
+					path.quadTo(c[0], c[1], c[2], c[3]);
+					size += 17;
+					break;
+				case PathIterator.SEG_CUBICTO:
+					path.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+					size += 25;
+					break;
+				case PathIterator.SEG_CLOSE:
+					path.closePath();
+					size += 1;
+					break;
+				default:
+					break;
+				}
+			}
+			path.trimToSize();
+			if(fill) {
+				add(g -> g.fill(path), size);
+			} else {
+				add(g -> g.draw(path), size);
+			}
+		}
+
+		private void unsupported() {
+			builder.unsupported = true;
+		}
+
+		@Override
+		public void draw(Shape s) {
+			add(s, false);
+		}
+
+		@Override
+		public void fill(Shape s) {
+			add(s, true);
+		}
+
+		@Override
+		public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+			if(!(img instanceof BufferedImage)) {
+				// 描画する倍率に合わせて縮小した画像は別の倍率で再生すると粗くなります。
+				unsupported();
+				return true;
+			}
+			AffineTransform t = (xform != null) ? new AffineTransform(xform) : new AffineTransform();
+			long size = 0L;
+			if(builder.images.add(img)) {
+				size = 4L * ((BufferedImage)img).getWidth() * ((BufferedImage)img).getHeight();
+			}
+			add(g -> g.drawImage(img, t, null), size);
+			return true;
+		}
+
+		@Override
+		public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+			drawImage((op != null) ? op.filter(img, null) : img, AffineTransform.getTranslateInstance(x, y), null);
+		}
+
+		@Override
+		public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+			if(img instanceof BufferedImage) {
+				drawImage((BufferedImage)img, xform, null);
+			} else {
+				unsupported();
+			}
+		}
+
+		@Override
+		public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+			unsupported();
+		}
+
+		@Override
+		public void drawString(String str, int x, int y) {
+			drawString(str, (float)x, (float)y);
+		}
+
+		@Override
+		public void drawString(String str, float x, float y) {
+			if(!str.isEmpty()) {
+				drawGlyphVector(state.font.createGlyphVector(getFontRenderContext(), str), x, y);
+			}
+		}
+
+		@Override
+		public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+			drawString(iterator, (float)x, (float)y);
+		}
+
+		@Override
+		public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+			if(iterator.getEndIndex() > iterator.getBeginIndex()) {
+				fill(new TextLayout(iterator, getFontRenderContext()).getOutline(AffineTransform.getTranslateInstance(x, y)));
+			}
+		}
+
+		@Override
+		public void drawGlyphVector(GlyphVector g, float x, float y) {
+			fill(g.getOutline(x, y));
+		}
+
+		@Override
+		public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+			unsupported();
+			return false;
+		}
+
+		@Override
+		public GraphicsConfiguration getDeviceConfiguration() {
+			return SCRATCH.getDeviceConfiguration();
+		}
+
+		@Override
+		public void setComposite(Composite comp) {
+			mutate().composite = comp;
+		}
+
+		@Override
+		public void setPaint(Paint paint) {
+			if(paint == null) {
+				return;
+			}
+			State s = mutate();
+			s.paint = paint;
+			if(paint instanceof Color) {
+				s.color = (Color)paint;
+			} else if(!paint.getClass().getName().startsWith("java.awt.")) {
+				// PDFBox のシェーディングは描画するときにドキュメントを参照します。
+				builder.documentBound = true;
+			}
+		}
+
+		@Override
+		public void setStroke(Stroke s) {
+			mutate().stroke = s;
+		}
+
+		@Override
+		public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+			mutate().hints.put(hintKey, hintValue);
+		}
+
+		@Override
+		public Object getRenderingHint(RenderingHints.Key hintKey) {
+			return state.hints.get(hintKey);
+		}
+
+		@Override
+		public void setRenderingHints(Map<?, ?> hints) {
+			State s = mutate();
+			s.hints = new RenderingHints(null);
+			s.hints.putAll(hints);
+		}
+
+		@Override
+		public void addRenderingHints(Map<?, ?> hints) {
+			mutate().hints.putAll(hints);
+		}
+
+		@Override
+		public RenderingHints getRenderingHints() {
+			return (RenderingHints)state.hints.clone();
+		}
+
+		@Override
+		public void translate(int x, int y) {
+			mutate().transform.translate(x, y);
+		}
+
+		@Override
+		public void translate(double tx, double ty) {
+			mutate().transform.translate(tx, ty);
+		}
+
+		@Override
+		public void rotate(double theta) {
+			mutate().transform.rotate(theta);
+		}
+
+		@Override
+		public void rotate(double theta, double x, double y) {
+			mutate().transform.rotate(theta, x, y);
+		}
+
+		@Override
+		public void scale(double sx, double sy) {
+			mutate().transform.scale(sx, sy);
+		}
+
+		@Override
+		public void shear(double shx, double shy) {
+			mutate().transform.shear(shx, shy);
+		}
+
+		@Override
+		public void transform(AffineTransform tx) {
+			mutate().transform.concatenate(tx);
+		}
+
+		@Override
+		public void setTransform(AffineTransform tx) {
+			mutate().transform = new AffineTransform(tx);
+		}
+
+		@Override
+		public AffineTransform getTransform() {
+			return new AffineTransform(state.transform);
+		}
+
+		@Override
+		public Paint getPaint() {
+			return state.paint;
+		}
+
+		@Override
+		public Composite getComposite() {
+			return state.composite;
+		}
+
+		@Override
+		public void setBackground(Color color) {
+			mutate().background = color;
+		}
+
+		@Override
+		public Color getBackground() {
+			return state.background;
+		}
+
+		@Override
+		public Stroke getStroke() {
+			return state.stroke;
+		}
+
+		@Override
+		public void clip(Shape s) {
+			if(s == null) {
+				setClip(null);
+				return;
+			}
+			State st = mutate();
+			Shape device = st.transform.createTransformedShape(s);
+			if(st.clip == null) {
+				st.clip = device;
+			} else {
+				Area area = new Area(st.clip);
+				area.intersect(new Area(device));
+				st.clip = area;
+			}
+		}
+
+		@Override
+		public FontRenderContext getFontRenderContext() {
+			Object aa = state.hints.get(RenderingHints.KEY_TEXT_ANTIALIASING);
+			Object fm = state.hints.get(RenderingHints.KEY_FRACTIONALMETRICS);
+			return new FontRenderContext(state.transform,
+					(aa != null) ? aa : RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT,
+					(fm != null) ? fm : RenderingHints.VALUE_FRACTIONALMETRICS_DEFAULT);
+		}
+
+		@Override
+		public Graphics create() {
+			Recorder child = new Recorder(builder, state);
+			child.shared = true;
+			shared = true;
+			return child;
+		}
+
+		@Override
+		public Color getColor() {
+			return state.color;
+		}
+
+		@Override
+		public void setColor(Color c) {
+			setPaint(c);
+		}
+
+		@Override
+		public void setPaintMode() {
+			setComposite(AlphaComposite.SrcOver);
+		}
+
+		@Override
+		public void setXORMode(Color c1) {
+			unsupported();
+		}
+
+		@Override
+		public Font getFont() {
+			return state.font;
+		}
+
+		@Override
+		public void setFont(Font font) {
+			if(font != null) {
+				mutate().font = font;
+			}
+		}
+
+		@Override
+		public FontMetrics getFontMetrics(Font f) {
+			return SCRATCH.getFontMetrics(f);
+		}
+
+		@Override
+		public Rectangle getClipBounds() {
+			Shape clip = getClip();
+			return (clip != null) ? clip.getBounds() : null;
+		}
+
+		@Override
+		public void clipRect(int x, int y, int width, int height) {
+			clip(new Rectangle(x, y, width, height));
+		}
+
+		@Override
+		public void setClip(int x, int y, int width, int height) {
+			setClip(new Rectangle(x, y, width, height));
+		}
+
+		@Override
+		public Shape getClip() {
+			if(state.clip == null) {
+				return null;
+			}
+			try {
+				return state.transform.createInverse().createTransformedShape(state.clip);
+			} catch(NoninvertibleTransformException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public void setClip(Shape clip) {
+			State s = mutate();
+			s.clip = (clip != null) ? s.transform.createTransformedShape(clip) : null;
+		}
+
+		@Override
+		public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+			unsupported();
+		}
+
+		@Override
+		public void drawLine(int x1, int y1, int x2, int y2) {
+			draw(new Line2D.Float(x1, y1, x2, y2));
+		}
+
+		@Override
+		public void fillRect(int x, int y, int width, int height) {
+			fill(new Rectangle(x, y, width, height));
+		}
+
+		@Override
+		public void clearRect(int x, int y, int width, int height) {
+			add(g -> g.clearRect(x, y, width, height), 0L);
+		}
+
+		@Override
+		public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+			draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+		}
+
+		@Override
+		public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+			fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+		}
+
+		@Override
+		public void drawOval(int x, int y, int width, int height) {
+			draw(new Ellipse2D.Float(x, y, width, height));
+		}
+
+		@Override
+		public void fillOval(int x, int y, int width, int height) {
+			fill(new Ellipse2D.Float(x, y, width, height));
+		}
+
+		@Override
+		public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+			draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+		}
+
+		@Override
+		public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+			fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+		}
+
+		@Override
+		public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+			if(nPoints > 0) {
+				Path2D.Float path = new Path2D.Float();
+				path.moveTo(xPoints[0], yPoints[0]);
+				for(int i = 1; i < nPoints; i++) {
+					path.lineTo(xPoints[i], yPoints[i]);
+				}
+				draw(path);
+			}
+		}
+
+		@Override
+		public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+			draw(new Polygon(xPoints, yPoints, nPoints));
+		}
+
+		@Override
+		public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+			fill(new Polygon(xPoints, yPoints, nPoints));
+		}
+
+		@Override
+		public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+			return drawImage(img, AffineTransform.getTranslateInstance(x, y), observer);
+		}
+
+		@Override
+		public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+			int w = img.getWidth(null);
+			int h = img.getHeight(null);
+			if(w <= 0 || h <= 0) {
+				unsupported();
+				return true;
+			}
+			AffineTransform t = AffineTransform.getTranslateInstance(x, y);
+			t.scale((double)width / w, (double)height / h);
+			return drawImage(img, t, observer);
+		}
+
+		@Override
+		public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+			return drawImage(img, x, y, img.getWidth(null), img.getHeight(null), bgcolor, observer);
+		}
+
+		@Override
+		public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+			fillBackground(new Rectangle(x, y, width, height), bgcolor);
+			return drawImage(img, x, y, width, height, observer);
+		}
+
+		@Override
+		public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+			if(dx1 == dx2 || dy1 == dy2 || sx1 == sx2 || sy1 == sy2) {
+				return true;
+			}
+			// 転送元の矩形を転送先の矩形に写す変換で画像全体を描画し、転送先の矩形で切り取ります。
+			AffineTransform t = AffineTransform.getTranslateInstance(dx1, dy1);
+			t.scale((double)(dx2 - dx1) / (sx2 - sx1), (double)(dy2 - dy1) / (sy2 - sy1));
+			t.translate(-sx1, -sy1);
+			State saved = save();
+			clip(new Rectangle(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)));
+			drawImage(img, t, observer);
+			state = saved;
+			return true;
+		}
+
+		@Override
+		public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+			fillBackground(new Rectangle(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)), bgcolor);
+			return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+		}
+
+		private void fillBackground(Rectangle2D rect, Color bgcolor) {
+			if(bgcolor == null) {
+				return;
+			}
+			State saved = save();
+			setPaint(bgcolor);
+			fill(rect);
+			state = saved;
+		}
+
+		/** 一時的に状態を変更するために、現在の状態を返します。返された状態は変更されなくなるため、後で元に戻せます。
+		 *
+		 */
+		private State save() {
+			shared = true;
+			return state;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+}
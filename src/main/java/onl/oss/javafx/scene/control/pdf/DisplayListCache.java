@@ -0,0 +1,158 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/** ページの {@link DisplayList} をバイト数の上限付きで保持する LRU キャッシュです。
+ *
+ * ページを初めてレンダリングするときに描画命令を記録し、別の大きさでレンダリングし直すときは記録した描画命令を再生します。
+ * 記録できないページは覚えておき、次からは記録を試みずに直接レンダリングします。
+ * スレッドセーフです。
+ */
+final class DisplayListCache {
+
+	/** 1 つのページに使用できるバイト数の、キャッシュのサイズに対する割合の逆数です。 */
+	private static final int MAX_ENTRY_RATIO = 4;
+
+	private final LinkedHashMap<Key, DisplayList> map = new LinkedHashMap<>(16, 0.75f, true);
+	/** 記録できなかったページです。 */
+	private final Set<Key> unrecordable = new HashSet<>();
+	private long maxBytes;
+	private long bytes;
+
+	DisplayListCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	/** ページを描画します。
+	 *
+	 * キャッシュにディスプレイリストがあれば再生し、なければページを記録してから再生します。
+	 * 呼び出し元で instance を排他制御する必要があります。
+	 *
+	 * @param document キャッシュのキーとする元のドキュメント。
+	 * @param instance 排他制御しているドキュメント。document かその複製です。
+	 * @param pageIndex ページ番号。
+	 * @param graphics 描画先。
+	 * @param scale 倍率。
+	 * @param hints レンダリングヒント。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @throws IOException ページを読み込めなかった場合。
+	 * @throws CancellationException 取り消された場合。
+	 */
+	void draw(PDDocument document, PDDocument instance, int pageIndex, Graphics2D graphics, float scale, RenderingHints hints, BooleanSupplier cancelled) throws IOException {
+		Key key = new Key(document, pageIndex, hints);
+		DisplayList list;
+		long limit;
+		synchronized (this) {
+			list = map.get(key);
+			limit = unrecordable.contains(key) ? 0L : maxBytes / MAX_ENTRY_RATIO;
+		}
+		if(list == null && limit > 0L) {
+			list = DisplayList.record(instance, pageIndex, scale, hints, limit, cancelled);
+			if(list != null) {
+				put(key, list);
+			} else {
+				synchronized (this) {
+					unrecordable.add(key);
+				}
+			}
+		}
+		if(list != null && list.isReplayable(instance)) {
+			list.replay(graphics, scale, cancelled);
+		} else {
+			PageRenderer.draw(instance, pageIndex, graphics, scale, hints, false, cancelled);
+		}
+	}
+
+	private synchronized void put(Key key, DisplayList list) {
+		DisplayList old = map.put(key, list);
+		if(old != null) {
+			bytes -= old.getBytes();
+		}
+		bytes += list.getBytes();
+		trim();
+	}
+
+	/** 指定したドキュメントのディスプレイリストをすべて破棄します。
+	 *
+	 * @param document 破棄するディスプレイリストのドキュメント。
+	 */
+	synchronized void remove(PDDocument document) {
+		Iterator<Map.Entry<Key, DisplayList>> it = map.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Key, DisplayList> entry = it.next();
+			if(entry.getKey().document == document) {
+				bytes -= entry.getValue().getBytes();
+				it.remove();
+			}
+		}
+		unrecordable.removeIf(key -> key.document == document);
+	}
+
+	private void trim() {
+		Iterator<DisplayList> it = map.values().iterator();
+		while(bytes > maxBytes && it.hasNext()) {
+			bytes -= it.next().getBytes();
+			it.remove();
+		}
+	}
+
+	/** キャッシュのキーです。ドキュメントは同一性で比較します。 */
+	private static final class Key {
+		private final PDDocument document;
+		private final int pageIndex;
+		private final RenderingHints hints;
+		private final int hashCode;
+
+		private Key(PDDocument document, int pageIndex, RenderingHints hints) {
+			this.document = document;
+			this.pageIndex = pageIndex;
+			// RenderingHints は可変なので複製を保持します。
+			this.hints = (hints != null) ? (RenderingHints)hints.clone() : null;
+			this.hashCode = Objects.hash(System.identityHashCode(document), pageIndex, this.hints);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return document == other.document
+					&& pageIndex == other.pageIndex
+					&& Objects.equals(hints, other.hints);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
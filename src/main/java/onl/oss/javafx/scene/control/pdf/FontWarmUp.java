@@ -0,0 +1,198 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/** レンダリングの前にフォントを読み込んでおくための処理です。
+ *
+ * ページのリソースからフォントを探して読み込み、PDDocument のリソースキャッシュに格納します。
+ * 読み込んだフォントはその PDDocument でしか使用できないため、スレッドごとに開き直した PDDocument のそれぞれで読み込みます。
+ * 埋め込まれていないフォントの代替を探すために PDFBox はシステムのフォントをすべて調べますが、
+ * その結果はディスク上のフォントキャッシュに保存されるため、次回以降の起動ではフォントの再走査は行われません。
+ * フォントキャッシュの場所は {@link #setCacheDirectory(File)} で変更できます。
+ */
+final class FontWarmUp {
+
+	/** PDFBox がフォントキャッシュの場所として参照するシステムプロパティです。 */
+	private static final String FONT_CACHE_PROPERTY = "pdfbox.fontcache";
+
+	private static final AtomicBoolean mapperInitialized = new AtomicBoolean();
+
+	/** フォントキャッシュの場所を変更したことがある場合は true です。 */
+	private static boolean cacheDirectoryChanged;
+
+	/** フォントキャッシュの場所を変更する前のシステムプロパティの値です。 */
+	private static String originalCacheDirectory;
+
+	private FontWarmUp() {
+	}
+
+	/** フォントキャッシュを保存するディレクトリを設定します。
+	 *
+	 * システムのフォントの走査が始まる前に呼び出す必要があります。
+	 * システムプロパティは JVM 全体で共有されるため、null を指定した場合は最初に変更する前の値に戻します。
+	 *
+	 * @param directory フォントキャッシュを保存するディレクトリ。null の場合は変更する前の場所に戻します。
+	 */
+	static synchronized void setCacheDirectory(File directory) {
+		if(directory == null) {
+			if(!cacheDirectoryChanged) {
+				return;
+			}
+			if(originalCacheDirectory != null) {
+				System.setProperty(FONT_CACHE_PROPERTY, originalCacheDirectory);
+			} else {
+				System.clearProperty(FONT_CACHE_PROPERTY);
+			}
+			cacheDirectoryChanged = false;
+		} else {
+			if(!cacheDirectoryChanged) {
+				originalCacheDirectory = System.getProperty(FONT_CACHE_PROPERTY);
+				cacheDirectoryChanged = true;
+			}
+			System.setProperty(FONT_CACHE_PROPERTY, directory.getAbsolutePath());
+		}
+	}
+
+	static File getCacheDirectory() {
+		String path = System.getProperty(FONT_CACHE_PROPERTY);
+		return (path != null) ? new File(path) : null;
+	}
+
+	/** 代替フォントを探すための FontMapper の初期化をバックグラウンドで開始します。
+	 *
+	 * 初期化ではフォントキャッシュの読み込み（フォントキャッシュがない場合はシステムのフォントの走査）が行われるため、
+	 * ドキュメントの解析と並行して実行することで待ち時間を短くします。2 回目以降の呼び出しでは何もしません。
+	 *
+	 * @param executor 初期化を実行する Executor。フォントのファイルを読み込むため、入出力用の Executor を指定します。
+	 */
+	static void initializeMapper(Executor executor) {
+		if(mapperInitialized.compareAndSet(false, true)) {
+			executor.execute(() -> {
+				// 代替フォントの検索を 1 回行うと FontMapper がフォントの一覧を読み込みます。
+				FontMappers.instance().getFontBoxFont("Helvetica", null);
+			});
+		}
+	}
+
+	/** 指定したページで使用しているフォントを読み込みます。
+	 *
+	 * 呼び出し元で PDDocument を排他制御する必要があります。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex ページ番号。
+	 * @param visited 走査済みのリソース。同じドキュメントの複数のページで共有されているリソースを何度も走査しないようにします。
+	 */
+	static void warmUp(PDDocument document, int pageIndex, Set<COSBase> visited) {
+		PDPage page = document.getPage(pageIndex);
+		warmUp(page.getResources(), visited);
+		try {
+			for(PDAnnotation annotation : page.getAnnotations()) {
+				PDAppearanceStream appearance = annotation.getNormalAppearanceStream();
+				if(appearance != null) {
+					warmUp(appearance.getResources(), visited);
+				}
+			}
+		} catch(IOException ignore) {
+			// 注釈が読み込めない場合はレンダリングの際にエラーとして扱われます。
+		}
+	}
+
+	/** ページの順にすべてのページで使用しているフォントをバックグラウンドで読み込みます。
+	 *
+	 * 元のドキュメントと、RenderPool がレンダリングに使用するすべての PDDocument のそれぞれで読み込みます。
+	 * PDDocument ごとに並行して読み込み、ページごとにその PDDocument を排他制御するため、読み込みの途中でもレンダリングを行うことができます。
+	 * 1 ページごとに Executor に投入し直すため、優先度に従って実行する Executor では、その間に優先度の高い処理が実行されます。
+	 *
+	 * @param renderPool ドキュメントを登録した RenderPool。
+	 * @param document 元のドキュメント。
+	 * @param firstPageIndex 最初に読み込むページ番号。このページから後ろのページ、前のページの順に読み込みます。
+	 * @param visited 走査済みのリソース。PDDocument ごとにリソースは別のオブジェクトであるため、すべての PDDocument で共有できます。
+	 * @param executor ページを処理する Executor。
+	 * @param cancelled 読み込みを中止する場合に true を返す関数。
+	 */
+	static void warmUpInBackground(RenderPool renderPool, PDDocument document, int firstPageIndex, Set<COSBase> visited, Executor executor, BooleanSupplier cancelled) {
+		executor.execute(() -> {
+			if(cancelled.getAsBoolean()) {
+				return;
+			}
+			// スレッドごとに開き直す PDDocument がまだなければ、ここで開き直します。
+			List<PDDocument> instances = renderPool.getInstances(document);
+			if(!instances.contains(document)) {
+				instances.add(0, document);
+			}
+			for(PDDocument instance : instances) {
+				warmUpInBackground(instance, firstPageIndex, 0, visited, executor, cancelled);
+			}
+		});
+	}
+
+	private static void warmUpInBackground(PDDocument document, int firstPageIndex, int i, Set<COSBase> visited, Executor executor, BooleanSupplier cancelled) {
+		executor.execute(() -> {
+			int count;
+			synchronized (document) {
+				if(cancelled.getAsBoolean() || document.getDocument().isClosed()) {
+					return;
+				}
+				count = document.getNumberOfPages();
+				if(i >= count) {
+					return;
+				}
+				warmUp(document, (firstPageIndex + i) % count, visited);
+			}
+			if(i + 1 < count) {
+				warmUpInBackground(document, firstPageIndex, i + 1, visited, executor, cancelled);
+			}
+		});
+	}
+
+	static Set<COSBase> createVisitedSet() {
+		return Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+
+	private static void warmUp(PDResources resources, Set<COSBase> visited) {
+		if(resources == null || !visited.add(resources.getCOSObject())) {
+			return;
+		}
+		for(COSName name : resources.getFontNames()) {
+			try {
+				PDFont font = resources.getFont(name);
+				if(font instanceof PDType3Font) {
+					warmUp(((PDType3Font)font).getResources(), visited);
+				}
+			} catch(IOException ignore) {
+				// 読み込めないフォントはレンダリングの際に代替フォントが使用されます。
+			}
+		}
+		for(COSName name : resources.getXObjectNames()) {
+			try {
+				PDXObject xobject = resources.getXObject(name);
+				if(xobject instanceof PDFormXObject) {
+					warmUp(((PDFormXObject)xobject).getResources(), visited);
+				}
+			} catch(IOException ignore) {
+				// 読み込めない XObject はレンダリングの際にエラーとして扱われます。
+			}
+		}
+	}
+}
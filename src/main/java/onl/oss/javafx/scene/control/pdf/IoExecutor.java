@@ -0,0 +1,35 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** ドキュメントの読み込みなど、入出力を待つ処理を実行するスレッドを作成します。
+ *
+ * 入出力を待つ間はスレッドが占有されるため、レンダリングのスレッドとは分けて、必要なだけスレッドを作成します。
+ * Java 21 以降では仮想スレッドを使用するクラスに置き換えられます（src/main/java21）。
+ */
+final class IoExecutor {
+
+	private static final ExecutorService DEFAULT = create("fx-pdf-io-");
+
+	private IoExecutor() {
+	}
+
+	/** 既定の Executor を返します。すべての {@link RenderService} で共有されます。
+	 *
+	 * @return Executor。
+	 */
+	static ExecutorService getDefault() {
+		return DEFAULT;
+	}
+
+	private static ExecutorService create(String prefix) {
+		AtomicInteger number = new AtomicInteger();
+		return Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, prefix + number.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+}
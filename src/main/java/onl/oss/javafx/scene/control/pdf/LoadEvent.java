@@ -0,0 +1,50 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** ドキュメントの読み込みの計測結果を記録する JDK Flight Recorder のイベントです。
+ *
+ */
+@Name("onl.oss.javafx.pdf.Load")
+@Label("PDF Load")
+@Category({ "fx-pdf" })
+@Description("Loading of a PDF document by PdfView")
+final class LoadEvent extends Event {
+
+	@Label("Page Count")
+	int pageCount;
+
+	@Label("Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueWait;
+
+	@Label("Parse Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long parseTime;
+
+	@Label("Font Warm-up Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long fontWarmUpTime;
+
+	@Label("Total Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long totalTime;
+
+	static void commit(LoadMetrics metrics) {
+		LoadEvent event = new LoadEvent();
+		if(!event.isEnabled()) {
+			return;
+		}
+		event.pageCount = metrics.getPageCount();
+		event.queueWait = metrics.getQueueWaitNanos();
+		event.parseTime = metrics.getParseNanos();
+		event.fontWarmUpTime = metrics.getFontWarmUpNanos();
+		event.totalTime = metrics.getTotalNanos();
+		event.commit();
+	}
+}
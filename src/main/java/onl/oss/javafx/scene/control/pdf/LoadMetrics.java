@@ -0,0 +1,61 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/** ドキュメントの読み込みにかかった時間などの計測結果です。
+ *
+ * {@link RenderListener} に通知されます。時間はすべてナノ秒で表します。
+ */
+public final class LoadMetrics {
+
+	private final PDDocument document;
+	private final int pageCount;
+	private final long queueWaitNanos;
+	private final long parseNanos;
+	private final long fontWarmUpNanos;
+	private final long totalNanos;
+
+	LoadMetrics(PDDocument document, int pageCount, long queueWaitNanos, long parseNanos, long fontWarmUpNanos, long totalNanos) {
+		this.document = document;
+		this.pageCount = pageCount;
+		this.queueWaitNanos = queueWaitNanos;
+		this.parseNanos = parseNanos;
+		this.fontWarmUpNanos = fontWarmUpNanos;
+		this.totalNanos = totalNanos;
+	}
+
+	public PDDocument getDocument() {
+		return document;
+	}
+
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/** 読み込みを開始してからワーカースレッドで実行が始まるまでの時間を返します。 */
+	public long getQueueWaitNanos() {
+		return queueWaitNanos;
+	}
+
+	/** ファイルやストリームの読み込みと PDF の解析にかかった時間を返します。 */
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	/** 最初に表示するページのフォントの読み込みにかかった時間を返します。 */
+	public long getFontWarmUpNanos() {
+		return fontWarmUpNanos;
+	}
+
+	/** 読み込みを開始してからドキュメントが PdfView に設定されるまでの時間を返します。 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "LoadMetrics[pageCount=" + pageCount + ", queueWait=" + queueWaitNanos / 1000000.0 + "ms"
+				+ ", parse=" + parseNanos / 1000000.0 + "ms, fontWarmUp=" + fontWarmUpNanos / 1000000.0 + "ms"
+				+ ", total=" + totalNanos / 1000000.0 + "ms]";
+	}
+}
@@ -0,0 +1,216 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/** ファイルの複製をメモリにマップしたものです。
+ *
+ * 元のファイルを直接マップすると、Windows ではファイルが上書きできなくなり、
+ * それ以外の環境でも上書きによってマップした内容が壊れてしまいます。
+ * そのため、一時ファイルに複製してからマップします。
+ * 複製にはファイル全体の読み書きが必要なため、大きなファイルでは時間がかかります。進捗は複製したバイト数で報告します。
+ * 一時ファイルは閉じた時点で削除され（Windows ではマップが解放された時点で削除され）、
+ * マップした内容はヒープではなく OS のページキャッシュに保持されます。
+ */
+final class MappedFile {
+
+	/** 1 つの MappedByteBuffer でマップする大きさです。MappedByteBuffer は 2GB を超えることができません。 */
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final ByteBuffer[] segments;
+	private final long length;
+
+	private MappedFile(ByteBuffer[] segments, long length) {
+		this.segments = segments;
+		this.length = length;
+	}
+
+	/** ファイルを一時ファイルに複製してメモリにマップします。
+	 *
+	 * @param file 読み込むファイル。
+	 * @param progress 複製したバイト数の合計を渡して呼び出される処理。
+	 * @return マップしたファイル。
+	 * @throws IOException 入出力エラーが発生した場合。
+	 */
+	static MappedFile snapshot(File file, LongConsumer progress) throws IOException {
+		Path temp = Files.createTempFile("fx-pdf-", ".pdf");
+		try {
+			try(InputStream in = new ProgressInputStream(new FileInputStream(file), progress)) {
+				Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+			}
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+				long length = channel.size();
+				ByteBuffer[] segments = new ByteBuffer[(int)((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+				for(int i = 0; i < segments.length; i++) {
+					long position = (long)i << SEGMENT_BITS;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+				}
+				return new MappedFile(segments, length);
+			}
+		} catch(IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	/** 読み込み位置を個別に持つ RandomAccessRead を作成します。
+	 *
+	 * 同じ MappedFile から作成した RandomAccessRead はマップした内容を共有するため、
+	 * スレッドごとに PDDocument を開き直してもメモリの使用量は増えません。
+	 *
+	 * @return RandomAccessRead。
+	 */
+	RandomAccessRead newReader() {
+		ByteBuffer[] buffers = new ByteBuffer[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			buffers[i] = segments[i].duplicate();
+		}
+		return new Reader(buffers, length);
+	}
+
+	private static final class Reader implements RandomAccessRead {
+		private ByteBuffer[] segments;
+		private final long length;
+		private long position;
+
+		private Reader(ByteBuffer[] segments, long length) {
+			this.segments = segments;
+			this.length = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkClosed();
+			if(position >= length) {
+				return -1;
+			}
+			int b = segments[(int)(position >>> SEGMENT_BITS)].get((int)(position & SEGMENT_MASK)) & 0xFF;
+			position++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b) throws IOException {
+			return read(b, 0, b.length);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkClosed();
+			if(len == 0) {
+				return 0;
+			}
+			if(position >= length) {
+				return -1;
+			}
+			int n = (int)Math.min(len, length - position);
+			int remaining = n;
+			while(remaining > 0) {
+				ByteBuffer segment = segments[(int)(position >>> SEGMENT_BITS)];
+				int offset = (int)(position & SEGMENT_MASK);
+				int count = Math.min(remaining, segment.limit() - offset);
+				segment.position(offset);
+				segment.get(b, off, count);
+				off += count;
+				remaining -= count;
+				position += count;
+			}
+			return n;
+		}
+
+		@Override
+		public long getPosition() throws IOException {
+			checkClosed();
+			return position;
+		}
+
+		@Override
+		public void seek(long position) throws IOException {
+			checkClosed();
+			if(position < 0) {
+				throw new IOException("Invalid position " + position);
+			}
+			this.position = Math.min(position, length);
+		}
+
+		@Override
+		public long length() throws IOException {
+			checkClosed();
+			return length;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return segments == null;
+		}
+
+		@Override
+		public int peek() throws IOException {
+			int b = read();
+			if(b != -1) {
+				rewind(1);
+			}
+			return b;
+		}
+
+		@Override
+		public void rewind(int bytes) throws IOException {
+			seek(position - bytes);
+		}
+
+		@Override
+		public byte[] readFully(int length) throws IOException {
+			byte[] b = new byte[length];
+			int off = 0;
+			while(off < length) {
+				int count = read(b, off, length - off);
+				if(count < 0) {
+					throw new EOFException();
+				}
+				off += count;
+			}
+			return b;
+		}
+
+		@Override
+		public boolean isEOF() throws IOException {
+			checkClosed();
+			return position >= length;
+		}
+
+		@Override
+		public int available() throws IOException {
+			checkClosed();
+			return (int)Math.min(length - position, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public void close() {
+			segments = null;
+		}
+
+		private void checkClosed() throws IOException {
+			if(segments == null) {
+				throw new IOException("RandomAccessRead already closed");
+			}
+		}
+	}
+}
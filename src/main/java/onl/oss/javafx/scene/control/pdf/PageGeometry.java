@@ -0,0 +1,132 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.util.Arrays;
+
+/** ドキュメントのすべてのページの大きさを保持する表です。
+ *
+ * ページの大きさは回転を考慮したクロップボックスの大きさです。
+ * 作成した後は PDF のオブジェクトを参照しないため、FXアプリケーションスレッドから自由に参照できます。
+ * ドキュメントを表示した後にワーカースレッドで 1 回だけ作成し、ページの配置はすべてこの表から求めます。
+ * 作成し終わるまでは、すべてのページが最初に表示するページと同じ大きさであると見積もった表を使用します。
+ */
+final class PageGeometry {
+
+	private final PDDocument document;
+	private final float[] widths;
+	private final float[] heights;
+	/** 時計回りの回転の角度です。0、90、180、270 のいずれかです。 */
+	private final short[] rotations;
+	/** 各ページより前にあるページの高さの合計です。要素数はページ数 + 1 です。 */
+	private final double[] offsets;
+	private final float maxWidth;
+	private final boolean estimated;
+
+	private PageGeometry(PDDocument document, float[] widths, float[] heights, short[] rotations, boolean estimated) {
+		this.document = document;
+		this.estimated = estimated;
+		this.widths = widths;
+		this.heights = heights;
+		this.rotations = rotations;
+		this.offsets = new double[heights.length + 1];
+		float max = 0.0f;
+		for(int i = 0; i < heights.length; i++) {
+			offsets[i + 1] = offsets[i] + heights[i];
+			max = Math.max(max, widths[i]);
+		}
+		this.maxWidth = max;
+	}
+
+	/** ドキュメントのページの大きさの表を作成します。
+	 *
+	 * ページツリーをたどるため、呼び出し元で PDDocument を排他制御する必要があります。
+	 *
+	 * @param document ドキュメント。
+	 * @return ページの大きさの表。
+	 */
+	static PageGeometry build(PDDocument document) {
+		int count = document.getNumberOfPages();
+		float[] widths = new float[count];
+		float[] heights = new float[count];
+		short[] rotations = new short[count];
+		int i = 0;
+		// getPage(int) はページごとにページツリーをたどるため、イテレーターで順に参照します。
+		for(PDPage page : document.getPages()) {
+			if(i >= count) {
+				break;
+			}
+			PDRectangle size = PageRenderer.getPageSize(page);
+			widths[i] = size.getWidth();
+			heights[i] = size.getHeight();
+			rotations[i] = (short)(((page.getRotation() % 360) + 360) % 360);
+			i++;
+		}
+		return new PageGeometry(document, widths, heights, rotations, false);
+	}
+
+	/** すべてのページが指定したページと同じ大きさであると見積もった表を作成します。
+	 *
+	 * ページツリーをすべてたどる {@link #build(PDDocument)} より速く作成できるため、
+	 * ドキュメントを表示してから正確な表を作成し終わるまでの間に使用します。
+	 * 呼び出し元で PDDocument を排他制御する必要があります。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex 大きさの基準にするページ番号。
+	 * @return 見積もったページの大きさの表。
+	 */
+	static PageGeometry estimate(PDDocument document, int pageIndex) {
+		int count = document.getNumberOfPages();
+		PDPage page = document.getPage(pageIndex);
+		PDRectangle size = PageRenderer.getPageSize(page);
+		float[] widths = new float[count];
+		float[] heights = new float[count];
+		short[] rotations = new short[count];
+		Arrays.fill(widths, size.getWidth());
+		Arrays.fill(heights, size.getHeight());
+		Arrays.fill(rotations, (short)(((page.getRotation() % 360) + 360) % 360));
+		return new PageGeometry(document, widths, heights, rotations, true);
+	}
+
+	/** 見積もった表の場合は true を返します。
+	 *
+	 */
+	boolean isEstimated() {
+		return estimated;
+	}
+
+	PDDocument getDocument() {
+		return document;
+	}
+
+	int getPageCount() {
+		return widths.length;
+	}
+
+	double getWidth(int pageIndex) {
+		return widths[pageIndex];
+	}
+
+	double getHeight(int pageIndex) {
+		return heights[pageIndex];
+	}
+
+	int getRotation(int pageIndex) {
+		return rotations[pageIndex];
+	}
+
+	double getMaxWidth() {
+		return maxWidth;
+	}
+
+	/** 指定したページより前にあるページの高さの合計を返します。
+	 *
+	 * @param pageIndex ページ番号。ページ数を指定するとすべてのページの高さの合計を返します。
+	 * @return 高さの合計。
+	 */
+	double getOffset(int pageIndex) {
+		return offsets[pageIndex];
+	}
+}
@@ -0,0 +1,562 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/** PDF のページを画像にレンダリングするエンジンです。
+ *
+ * JavaFX に依存しないため、FXアプリケーションを起動していないサーバーでも使用できます。
+ * {@link PdfView} も内部でこのクラスを使用してレンダリングしています。
+ *
+ * {@link #renderPages(Callable, int, int, float, PageConsumer)} はページの範囲を複数のスレッドで並行してレンダリングします。
+ * PDDocument はスレッドセーフではないため、ドキュメントを開く処理を受け取り、スレッドごとにドキュメントを開いて使用します。
+ * レンダリング済みで受け取り側の処理が終わっていないページの数が上限に達すると、
+ * 呼び出し元のスレッドは空きができるまで待機するため、受け取り側の処理が遅くてもメモリの使用量は増え続けません。
+ * この上限は同じ PageRenderer を使用するすべての呼び出しで共有されます。
+ * スレッドセーフです。
+ */
+public final class PageRenderer implements Closeable {
+
+	/** 出力する画像の形式です。 */
+	public enum Format {
+		PNG("png"),
+		JPEG("jpeg"),
+		/** 幅と高さをそれぞれ 4 バイトのビッグエンディアンで書き込んだ後、上の行から順に各ピクセルを R, G, B の 3 バイトで書き込みます。 */
+		RAW(null);
+
+		private final String formatName;
+
+		Format(String formatName) {
+			this.formatName = formatName;
+		}
+	}
+
+	/** レンダリングしたページを受け取るインターフェースです。
+	 *
+	 * レンダリングを行ったスレッドから呼び出されるため、複数のページが同時に渡されることがあります。
+	 * ページの順序は保証されません。
+	 */
+	@FunctionalInterface
+	public interface PageConsumer {
+
+		/** レンダリングしたページを受け取ります。
+		 *
+		 * 画像は次のページのレンダリングに再利用されるため、このメソッドから戻った後に参照してはいけません。
+		 *
+		 * @param pageIndex ページ番号。
+		 * @param image ページの画像。
+		 * @throws IOException 入出力エラーが発生した場合。残りのページのレンダリングは中止されます。
+		 */
+		void accept(int pageIndex, BufferedImage image) throws IOException;
+	}
+
+	/** ページの画像を書き込む出力先を返すインターフェースです。 */
+	@FunctionalInterface
+	public interface PageOutput {
+
+		/** ページの画像を書き込む出力先を開きます。書き込み終わると閉じられます。
+		 *
+		 * @param pageIndex ページ番号。
+		 * @return 出力先。
+		 * @throws IOException 入出力エラーが発生した場合。
+		 */
+		OutputStream open(int pageIndex) throws IOException;
+	}
+
+	/** JPEG の既定の品質です。 */
+	public static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+	private final RenderPool renderPool;
+	/** スレッドを所有している場合は true です。RenderService から取得した PageRenderer は所有しません。 */
+	private final boolean owner;
+	private final int maxPendingPages;
+	private final Semaphore pending;
+	private final ArrayDeque<BufferedImage> freeImages = new ArrayDeque<>();
+	private volatile RenderingHints renderingHints;
+	private volatile float jpegQuality = DEFAULT_JPEG_QUALITY;
+
+	/** 利用できるプロセッサーの数のスレッドでレンダリングする PageRenderer を作成します。
+	 *
+	 */
+	public PageRenderer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/** レンダリングに使用するスレッドの数を指定して PageRenderer を作成します。
+	 *
+	 * 受け取り側の処理が終わっていないページの数の上限はスレッドの数の 2 倍になります。
+	 *
+	 * @param threads レンダリングに使用するスレッドの数。
+	 */
+	public PageRenderer(int threads) {
+		this(threads, Math.max(1, threads) * 2);
+	}
+
+	/** レンダリングに使用するスレッドの数と、受け取り側の処理が終わっていないページの数の上限を指定して PageRenderer を作成します。
+	 *
+	 * @param threads レンダリングに使用するスレッドの数。
+	 * @param maxPendingPages レンダリング中または受け取り側の処理が終わっていないページの数の上限。
+	 */
+	public PageRenderer(int threads, int maxPendingPages) {
+		this(new RenderPool(threads), true, maxPendingPages);
+	}
+
+	/** RenderPool を指定して PageRenderer を作成します。
+	 *
+	 * @param renderPool レンダリングに使用するスレッドのプール。
+	 * @param owner {@link #close()} でスレッドを停止する場合は true。
+	 * @param maxPendingPages レンダリング中または受け取り側の処理が終わっていないページの数の上限。
+	 */
+	PageRenderer(RenderPool renderPool, boolean owner, int maxPendingPages) {
+		this.renderPool = renderPool;
+		this.owner = owner;
+		this.maxPendingPages = Math.max(1, maxPendingPages);
+		this.pending = new Semaphore(this.maxPendingPages);
+	}
+
+	RenderPool getRenderPool() {
+		return renderPool;
+	}
+
+	public int getThreads() {
+		return renderPool.getThreads();
+	}
+
+	public int getMaxPendingPages() {
+		return maxPendingPages;
+	}
+
+	public void setRenderingHints(RenderingHints hints) {
+		renderingHints = hints;
+	}
+
+	public RenderingHints getRenderingHints() {
+		return renderingHints;
+	}
+
+	/** JPEG で出力する際の品質を設定します。
+	 *
+	 * @param quality 0.0 から 1.0 までの品質。
+	 */
+	public void setJpegQuality(float quality) {
+		jpegQuality = Math.max(0.0f, Math.min(1.0f, quality));
+	}
+
+	public float getJpegQuality() {
+		return jpegQuality;
+	}
+
+	/** ページを指定した倍率で画像にレンダリングします。呼び出し元のスレッドでレンダリングします。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex ページ番号。
+	 * @param scale 倍率。1.0 で 72 dpi になります。
+	 * @return ページの画像。
+	 * @throws IOException ページを読み込めなかった場合。
+	 */
+	public BufferedImage renderImage(PDDocument document, int pageIndex, float scale) throws IOException {
+		synchronized (document) {
+			PDRectangle size = getPageSize(document.getPage(pageIndex));
+			BufferedImage image = createImage(size, scale);
+			render(document, pageIndex, image, scale, () -> false);
+			return image;
+		}
+	}
+
+	/** ページを縦横比を保ったまま指定した大きさに収まるように画像にレンダリングします。呼び出し元のスレッドでレンダリングします。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex ページ番号。
+	 * @param width 最大の幅（ピクセル）。
+	 * @param height 最大の高さ（ピクセル）。
+	 * @return ページの画像。
+	 * @throws IOException ページを読み込めなかった場合。
+	 */
+	public BufferedImage renderImage(PDDocument document, int pageIndex, int width, int height) throws IOException {
+		synchronized (document) {
+			PDRectangle size = getPageSize(document.getPage(pageIndex));
+			float scale = getScale(size, width, height);
+			BufferedImage image = createImage(size, scale);
+			render(document, pageIndex, image, scale, () -> false);
+			return image;
+		}
+	}
+
+	/** ページの範囲を並行してレンダリングします。すべてのページの処理が終わるまで戻りません。
+	 *
+	 * ドキュメントを開く処理はレンダリングに使用するスレッドごとに呼び出されます。
+	 * 開いたドキュメントはこのメソッドから戻る前に閉じられます。
+	 *
+	 * @param opener ドキュメントを開く処理。たとえば {@code () -> PDDocument.load(file)}。
+	 * @param firstPage 最初のページ番号。
+	 * @param lastPage 最後のページ番号。ドキュメントのページ数を超える場合は最後のページまでレンダリングします。
+	 * @param scale 倍率。1.0 で 72 dpi になります。
+	 * @param consumer レンダリングしたページを受け取る処理。
+	 * @throws IOException ドキュメントを開けなかった場合、レンダリングに失敗した場合、受け取り側の処理で例外が発生した場合。
+	 * @throws InterruptedException 待機中に割り込まれた場合。残りのページのレンダリングは中止されます。
+	 */
+	public void renderPages(Callable<PDDocument> opener, int firstPage, int lastPage, float scale, PageConsumer consumer) throws IOException, InterruptedException {
+		PDDocument document;
+		try {
+			document = opener.call();
+		} catch(IOException | RuntimeException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new IOException(e);
+		}
+		try {
+			renderPool.register(document, opener);
+			renderPages(document, firstPage, lastPage, scale, consumer);
+		} finally {
+			renderPool.unregister(document);
+			document.close();
+		}
+	}
+
+	/** ページの範囲を並行してレンダリングします。すべてのページの処理が終わるまで戻りません。
+	 *
+	 * 開いているドキュメントを直接指定した場合、ドキュメントを排他制御しながらレンダリングするため、
+	 * 同じドキュメントのページが同時にレンダリングされることはありません。
+	 * 複数のドキュメントを別々のスレッドから同時にレンダリングする場合に使用します。
+	 *
+	 * @param document ドキュメント。
+	 * @param firstPage 最初のページ番号。
+	 * @param lastPage 最後のページ番号。ドキュメントのページ数を超える場合は最後のページまでレンダリングします。
+	 * @param scale 倍率。1.0 で 72 dpi になります。
+	 * @param consumer レンダリングしたページを受け取る処理。
+	 * @throws IOException レンダリングに失敗した場合、受け取り側の処理で例外が発生した場合。
+	 * @throws InterruptedException 待機中に割り込まれた場合。残りのページのレンダリングは中止されます。
+	 */
+	public void renderPages(PDDocument document, int firstPage, int lastPage, float scale, PageConsumer consumer) throws IOException, InterruptedException {
+		int last;
+		synchronized (document) {
+			last = Math.min(lastPage, document.getNumberOfPages() - 1);
+		}
+		int first = Math.max(0, firstPage);
+		if(first > last) {
+			return;
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		// 表示中のページのために中断を求められた場合も取り消します。中断したページはスケジューラーが後でレンダリングし直します。
+		BooleanSupplier cancelled = () -> failure.get() != null || RenderScheduler.isCancelled();
+		CountDownLatch done = new CountDownLatch(last - first + 1);
+		InterruptedException interrupted = null;
+		for(int i = first; i <= last; i++) {
+			int pageIndex = i;
+			try {
+				pending.acquire();
+			} catch(InterruptedException e) {
+				// 投入済みのページの処理が終わるのを待ってから戻ります。
+				interrupted = e;
+				failure.compareAndSet(null, e);
+				for(int j = i; j <= last; j++) {
+					done.countDown();
+				}
+				break;
+			}
+			try {
+				// 同じ RenderService を使用する PdfView の表示を待たせないように、空いている時間にレンダリングします。
+				renderPool.getScheduler().executor(RenderScheduler.Priority.BACKGROUND).execute(() -> {
+					boolean requeued = false;
+					try {
+						if(failure.get() == null) {
+							renderPage(document, pageIndex, scale, consumer, cancelled);
+						}
+					} catch(CancellationException e) {
+						if(failure.get() == null && RenderScheduler.isCancelled()) {
+							// 表示中のページのために中断しました。スケジューラーが後で最初から実行し直すため、まだ完了していません。
+							requeued = true;
+							throw e;
+						}
+						// 他のページで例外が発生したため、レンダリングを中断しました。
+					} catch(PageRenderException e) {
+						failure.compareAndSet(null, e.getCause());
+					} catch(Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						if(!requeued) {
+							pending.release();
+							done.countDown();
+						}
+					}
+				});
+			} catch(RuntimeException e) {
+				pending.release();
+				failure.compareAndSet(null, e);
+				for(int j = i; j <= last; j++) {
+					done.countDown();
+				}
+				break;
+			}
+		}
+
+		while(true) {
+			try {
+				done.await();
+				break;
+			} catch(InterruptedException e) {
+				interrupted = e;
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		if(interrupted != null) {
+			throw interrupted;
+		}
+		Throwable e = failure.get();
+		if(e instanceof IOException) {
+			throw (IOException)e;
+		} else if(e instanceof RuntimeException) {
+			throw (RuntimeException)e;
+		} else if(e instanceof Error) {
+			throw (Error)e;
+		} else if(e != null) {
+			throw new IOException(e);
+		}
+	}
+
+	/** ページの範囲を並行してレンダリングし、指定した形式で書き込みます。すべてのページの処理が終わるまで戻りません。
+	 *
+	 * @param opener ドキュメントを開く処理。
+	 * @param firstPage 最初のページ番号。
+	 * @param lastPage 最後のページ番号。
+	 * @param scale 倍率。1.0 で 72 dpi になります。
+	 * @param format 画像の形式。
+	 * @param output ページごとの出力先を開く処理。
+	 * @throws IOException ドキュメントを開けなかった場合、レンダリングまたは書き込みに失敗した場合。
+	 * @throws InterruptedException 待機中に割り込まれた場合。
+	 * @see #renderPages(Callable, int, int, float, PageConsumer)
+	 */
+	public void writePages(Callable<PDDocument> opener, int firstPage, int lastPage, float scale, Format format, PageOutput output) throws IOException, InterruptedException {
+		renderPages(opener, firstPage, lastPage, scale, (pageIndex, image) -> {
+			try(OutputStream out = output.open(pageIndex)) {
+				write(image, format, out);
+			}
+		});
+	}
+
+	/** 画像を指定した形式で書き込みます。ストリームは閉じません。
+	 *
+	 * @param image 画像。
+	 * @param format 画像の形式。
+	 * @param out 出力先。
+	 * @throws IOException 書き込みに失敗した場合。
+	 */
+	public void write(BufferedImage image, Format format, OutputStream out) throws IOException {
+		if(format == Format.RAW) {
+			writeRaw(image, out);
+			return;
+		}
+
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.formatName);
+		if(!writers.hasNext()) {
+			throw new IOException("No image writer: " + format);
+		}
+		ImageWriter writer = writers.next();
+		try {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if(format == Format.JPEG) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(jpegQuality);
+			}
+			// ImageIO.createImageOutputStream は一時ファイルを使用することがあるため、メモリーをキャッシュに使用します。
+			try(ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+				writer.setOutput(ios);
+				writer.write(null, new IIOImage(image, null, null), param);
+			}
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/** スレッドを停止します。レンダリング中のページは最後までレンダリングされます。
+	 *
+	 * {@link RenderService#getPageRenderer()} で取得した PageRenderer のスレッドはサービスのものなので、何もしません。
+	 * その場合は {@link RenderService#close()} でスレッドを停止します。
+	 */
+	@Override
+	public void close() {
+		if(owner) {
+			renderPool.getScheduler().shutdown();
+		}
+	}
+
+	private void renderPage(PDDocument document, int pageIndex, float scale, PageConsumer consumer, BooleanSupplier cancelled) throws IOException {
+		BufferedImage image = renderPool.apply(document, instance -> {
+			PDRectangle size = getPageSize(instance.getPage(pageIndex));
+			BufferedImage img = acquireImage(size, scale);
+			try {
+				render(instance, pageIndex, img, scale, cancelled);
+			} catch(IOException e) {
+				recycleImage(img);
+				throw new PageRenderException(e);
+			} catch(RuntimeException e) {
+				recycleImage(img);
+				throw e;
+			}
+			return img;
+		});
+		try {
+			consumer.accept(pageIndex, image);
+		} finally {
+			recycleImage(image);
+		}
+	}
+
+	private void render(PDDocument document, int pageIndex, BufferedImage image, float scale, BooleanSupplier cancelled) throws IOException {
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setBackground(Color.WHITE);
+			graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+			draw(document, pageIndex, graphics, scale, renderingHints, false, cancelled);
+		} finally {
+			graphics.dispose();
+		}
+	}
+
+	/** 同じ大きさの画像がプールにあれば再利用します。
+	 *
+	 */
+	private BufferedImage acquireImage(PDRectangle size, float scale) {
+		int width = getPixels(size.getWidth(), scale);
+		int height = getPixels(size.getHeight(), scale);
+		synchronized (freeImages) {
+			Iterator<BufferedImage> it = freeImages.iterator();
+			while(it.hasNext()) {
+				BufferedImage image = it.next();
+				if(image.getWidth() == width && image.getHeight() == height) {
+					it.remove();
+					return image;
+				}
+			}
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	private void recycleImage(BufferedImage image) {
+		synchronized (freeImages) {
+			freeImages.addFirst(image);
+			// 同時に使用される画像の数は未処理のページ数の上限を超えません。
+			while(freeImages.size() > maxPendingPages) {
+				freeImages.removeLast();
+			}
+		}
+	}
+
+	private static BufferedImage createImage(PDRectangle size, float scale) {
+		return new BufferedImage(getPixels(size.getWidth(), scale), getPixels(size.getHeight(), scale), BufferedImage.TYPE_INT_RGB);
+	}
+
+	private static int getPixels(float points, float scale) {
+		return (int)Math.max(Math.floor(points * scale), 1);
+	}
+
+	private static void writeRaw(BufferedImage image, OutputStream out) throws IOException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(width);
+		data.writeInt(height);
+		byte[] row = new byte[width * 3];
+		int[] pixels = (image.getType() == BufferedImage.TYPE_INT_RGB)
+				? ((DataBufferInt)image.getRaster().getDataBuffer()).getData() : null;
+		int[] line = (pixels == null) ? new int[width] : null;
+		for(int y = 0; y < height; y++) {
+			int offset = 0;
+			if(pixels != null) {
+				offset = y * width;
+			} else {
+				image.getRGB(0, y, width, 1, line, 0, width);
+			}
+			int[] source = (pixels != null) ? pixels : line;
+			for(int x = 0; x < width; x++) {
+				int rgb = source[offset + x];
+				row[x * 3] = (byte)(rgb >> 16);
+				row[x * 3 + 1] = (byte)(rgb >> 8);
+				row[x * 3 + 2] = (byte)rgb;
+			}
+			data.write(row);
+		}
+		data.flush();
+	}
+
+	/** ページを描画します。
+	 *
+	 * 呼び出し元で PDDocument を排他制御し、背景を塗りつぶしておく必要があります。
+	 *
+	 * @param document ドキュメント。
+	 * @param pageIndex ページ番号。
+	 * @param graphics 描画先。
+	 * @param scale 倍率。
+	 * @param hints レンダリングヒント。null の場合は既定のヒント。
+	 * @param subsampling 画像を間引いて読み込むことを許可する場合は true。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @throws IOException ページを読み込めなかった場合。
+	 * @throws CancellationException 取り消された場合。
+	 */
+	static void draw(PDDocument document, int pageIndex, Graphics2D graphics, float scale, RenderingHints hints, boolean subsampling, BooleanSupplier cancelled) throws IOException {
+		PDFRenderer renderer = new CancellablePDFRenderer(document, cancelled);
+		if(hints != null) {
+			renderer.setRenderingHints(hints);
+		}
+		renderer.setSubsamplingAllowed(subsampling);
+		renderer.renderPageToGraphics(pageIndex, graphics, scale);
+	}
+
+	/** ページの回転を考慮したクロップボックスの大きさを返します。
+	 *
+	 * @param page ページ。
+	 * @return 幅と高さだけを持つ矩形。
+	 */
+	static PDRectangle getPageSize(PDPage page) {
+		PDRectangle cropBox = page.getCropBox();
+		if(page.getRotation() % 180 != 0) {
+			return new PDRectangle(cropBox.getHeight(), cropBox.getWidth());
+		}
+		return new PDRectangle(cropBox.getWidth(), cropBox.getHeight());
+	}
+
+	/** 縦横比を保ったまま指定した大きさに収まる倍率を返します。
+	 *
+	 */
+	static float getScale(PDRectangle size, double width, double height) {
+		return (float)Math.min(width / size.getWidth(), height / size.getHeight());
+	}
+
+	/** RenderPool.apply の関数から IOException を伝えるための例外です。 */
+	private static final class PageRenderException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private PageRenderException(IOException cause) {
+			super(cause);
+		}
+	}
+}
@@ -1,45 +1,67 @@
 package onl.oss.javafx.scene.control.pdf;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
-import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Dimension2D;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Region;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.Screen;
+import javafx.util.Duration;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.rendering.PDFRenderer;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public final class PdfView extends Region {
 
@@ -140,20 +162,220 @@ public final class PdfView extends Region {
 		return renderBoundsProperty().get();
 	}
 
-	private RenderingHints renderingHints;
+	/** 拡大率です。1.0 でページ全体が PdfView に収まるように表示されます。
+	 *
+	 * {@link #MIN_ZOOM} から {@link #MAX_ZOOM} の範囲に制限されます。
+	 */
+	public final DoubleProperty zoomProperty() {
+		if (zoom == null) {
+			zoom = new SimpleDoubleProperty(this, "zoom", MIN_ZOOM);
+		}
+		return zoom;
+	}
+
+	private DoubleProperty zoom;
+
+	public final double getZoom() {
+		return zoomProperty().get();
+	}
+
+	public final void setZoom(double value) {
+		zoomProperty().set(value);
+	}
+
+	/** 拡大表示しているページの水平方向の移動量です。
+	 *
+	 * ページを中央に表示した位置からの移動量を PdfView の座標系で表します。
+	 */
+	public final DoubleProperty panXProperty() {
+		if (panX == null) {
+			panX = new SimpleDoubleProperty(this, "panX");
+		}
+		return panX;
+	}
+
+	private DoubleProperty panX;
+
+	public final double getPanX() {
+		return panXProperty().get();
+	}
+
+	public final void setPanX(double value) {
+		panXProperty().set(value);
+	}
+
+	/** 拡大表示しているページの垂直方向の移動量です。
+	 *
+	 * ページを中央に表示した位置からの移動量を PdfView の座標系で表します。
+	 */
+	public final DoubleProperty panYProperty() {
+		if (panY == null) {
+			panY = new SimpleDoubleProperty(this, "panY");
+		}
+		return panY;
+	}
+
+	private DoubleProperty panY;
+
+	public final double getPanY() {
+		return panYProperty().get();
+	}
+
+	public final void setPanY(double value) {
+		panYProperty().set(value);
+	}
+
+	/** 連続スクロールモードで表示するかどうかです。
+	 *
+	 * 有効にすると、すべてのページを縦に並べて表示し、スクロールして閲覧できるようにします。
+	 * 表示範囲とその前後に含まれるページだけがレンダリングされ、それ以外のページの画像は保持しません。
+	 * pageIndex は表示範囲を最も多く占めているページを表し、pageIndex を変更するとそのページまでスクロールします。
+	 */
+	public final BooleanProperty continuousProperty() {
+		if (continuous == null) {
+			continuous = new SimpleBooleanProperty(this, "continuous");
+		}
+		return continuous;
+	}
+
+	private BooleanProperty continuous;
+
+	public final boolean isContinuous() {
+		return continuousProperty().get();
+	}
+
+	public final void setContinuous(boolean value) {
+		continuousProperty().set(value);
+	}
+
+	/** 強調表示する検索結果です。
+	 *
+	 * {@link #search(String)} で取得した検索結果を設定すると、表示中のページの該当する位置を強調表示します。
+	 * 強調表示の図形にはスタイルクラス search-hit が設定されます。
+	 */
+	public final ObjectProperty<List<SearchHit>> searchHitsProperty() {
+		if (searchHits == null) {
+			searchHits = new SimpleObjectProperty<>(this, "searchHits");
+		}
+		return searchHits;
+	}
+
+	private ObjectProperty<List<SearchHit>> searchHits;
+
+	public final List<SearchHit> getSearchHits() {
+		return searchHitsProperty().get();
+	}
+
+	public final void setSearchHits(List<SearchHit> value) {
+		searchHitsProperty().set(value);
+	}
+
+	/** 全文検索の索引を作成し終わったページの割合です。0.0 から 1.0 までの値をとります。
+	 *
+	 */
+	public final ReadOnlyDoubleProperty indexProgressProperty() {
+		return indexProgressPropertyInternal();
+	}
+
+	private DoubleProperty indexProgressPropertyInternal() {
+		if (indexProgress == null) {
+			indexProgress = new SimpleDoubleProperty(this, "indexProgress");
+		}
+		return indexProgress;
+	}
+
+	private DoubleProperty indexProgress;
+
+	public final double getIndexProgress() {
+		return indexProgressProperty().get();
+	}
+
+	public static final double MIN_ZOOM = 1.0;
+	public static final double MAX_ZOOM = 8.0;
+
+	/** レンダリング済みの画像を保持するキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_RENDER_CACHE_SIZE = 64L * 1024L * 1024L;
+
+	/** ディスクキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_DISK_CACHE_SIZE = 512L * 1024L * 1024L;
+
+	/** 大きさの変更が終わってから再レンダリングするまでの既定の時間（ミリ秒）です。 */
+	public static final long DEFAULT_RESIZE_DELAY = 150L;
+
+	/** 倍率が 2 倍になるまでの既定の段階の数です。1 段階あたり約 9% 倍率が変わります。 */
+	public static final int DEFAULT_RENDER_SCALE_STEPS = 8;
+
+	private volatile RenderingHints renderingHints;
+	private int prefetchAhead = 2;
+	private int prefetchBehind = 1;
+	private volatile boolean progressiveRendering;
+	private volatile boolean memoryMapping;
+	private volatile boolean textIndexing = true;
+	private volatile int renderScaleSteps = DEFAULT_RENDER_SCALE_STEPS;
+	private long resizeDelay = DEFAULT_RESIZE_DELAY;
+	private final PauseTransition resizeTimer = new PauseTransition(Duration.millis(DEFAULT_RESIZE_DELAY));
+	/** 大きさを変更している途中かどうかです。FXアプリケーションスレッドからのみアクセスします。 */
+	private boolean resizing;
+	/** imageView に表示しているページ全体の画像のキーです。FXアプリケーションスレッドからのみアクセスします。 */
+	private RenderCache.Key displayedKey;
+	private volatile TextIndex textIndex;
+	private volatile DiskCache diskCache;
+	private final List<RenderListener> renderListeners = new CopyOnWriteArrayList<>();
+	private long diskCacheSize = DEFAULT_DISK_CACHE_SIZE;
 
 	private ProgressIndicator progressIndicator;
 	private ImageView imageView;
-
-	private ExecutorService worker;
+	private Group tileLayer;
+	private Group pageLayer;
+	private Group highlightLayer;
+
+	private final RenderService service;
+	private final RenderCache renderCache;
+	private final RenderBufferPool bufferPool;
+	private final DisplayListCache displayListCache;
+	private final RenderPool renderPool;
+	private final RenderScheduler scheduler;
 	private int initialPageIndex;
 
+	/** 既定の {@link RenderService} を使用して PdfView を作成します。
+	 *
+	 * サービスを指定せずに作成した PdfView と ThumbnailPane は、レンダリングに使用するスレッドとキャッシュを共有します。
+	 *
+	 * @see RenderService#getDefault()
+	 */
 	public PdfView() {
-		worker = Executors.newSingleThreadExecutor(r -> {
-			Thread t = new Thread(r);
-			t.setDaemon(true);
-			return t;
-		});
+		this(RenderService.getDefault());
+	}
+
+	/** レンダリングに使用するスレッドの数を指定して PdfView を作成します。
+	 *
+	 * 2 以上を指定すると、表示中のページ、タイル、先読みを複数のスレッドで並行してレンダリングします。
+	 * このとき、File またはバイト列から読み込んだドキュメントはスレッドごとに開き直して使用するため、
+	 * スレッド数に応じてメモリの使用量が増えます。
+	 *
+	 * @param renderThreads レンダリングに使用するスレッドの数。
+	 */
+	public PdfView(int renderThreads) {
+		this(new RenderService(renderThreads, DEFAULT_RENDER_CACHE_SIZE));
+	}
+
+	/** レンダリングのサービスを指定して PdfView を作成します。
+	 *
+	 * 同じサービスを指定した PdfView は、レンダリングに使用するスレッドとキャッシュを共有します。
+	 * 同じドキュメントを複数の PdfView で表示する場合も、同じ画像は 1 回だけレンダリングされます。
+	 *
+	 * @param service レンダリングのサービス。
+	 */
+	public PdfView(RenderService service) {
+		getStylesheets().add(PdfView.class.getResource("PdfView.css").toExternalForm());
+		getStyleClass().add("pdf-view");
+
+		this.service = Objects.requireNonNull(service);
+		renderCache = service.getRenderCache();
+		bufferPool = service.getBufferPool();
+		displayListCache = service.getDisplayListCache();
+		renderPool = service.getRenderPool();
+		scheduler = renderPool.getScheduler();
 
 		Rectangle clip = new Rectangle();
 		clip.widthProperty().bind(widthProperty());
@@ -164,14 +386,45 @@ public final class PdfView extends Region {
 		imageView.setPreserveRatio(true);
 		getChildren().add(imageView);
 
+		tileLayer = new Group();
+		getChildren().add(tileLayer);
+
+		pageLayer = new Group();
+		getChildren().add(pageLayer);
+
+		highlightLayer = new Group();
+		highlightLayer.setMouseTransparent(true);
+		getChildren().add(highlightLayer);
+
 		progressIndicator = new ProgressIndicator();
 		progressIndicator.setVisible(false);
 		getChildren().add(progressIndicator);
 
 		documentProperty().addListener((observable, oldValue, newValue) -> {
+			if (oldValue != null) {
+				service.release(oldValue);
+			}
+			if (newValue != null) {
+				service.retain(newValue);
+			}
+			cancelPrefetch();
+			// 読み込んだときに見積もったページの大きさの表があればそれを使用して先に表示し、正確な表はワーカースレッドで作成します。
+			PageGeometry loaded = loadedGeometry;
+			loadedGeometry = null;
+			geometry = (loaded != null && newValue != null && loaded.getDocument() == newValue) ? loaded : null;
+			geometryRequested = null;
+			if (newValue != null && (geometry == null || geometry.isEstimated())) {
+				requestGeometry(newValue);
+			}
+			scrollTop = 0.0;
+			setSearchHits(null);
+			startIndexing(newValue);
 			pageIndexProperty().set(initialPageIndex);
+			direction = 1;
 			if (newValue == null) {
 				maxPageIndexPropertyInternal().set(0);
+			} else if (geometry != null) {
+				maxPageIndexPropertyInternal().set(geometry.getPageCount() - 1);
 			} else {
 				maxPageIndexPropertyInternal().set(newValue.getNumberOfPages() - 1);
 			}
@@ -179,14 +432,134 @@ public final class PdfView extends Region {
 		});
 
 		pageIndexProperty().addListener((observable, oldValue, newValue) -> {
+			direction = (newValue.intValue() < oldValue.intValue()) ? -1 : 1;
+			// スクロールに合わせて pageIndex を更新した場合はスクロール位置を変更しません。
+			if (trackingPageIndex) {
+				return;
+			}
+			if (isContinuous()) {
+				scrollToPage(newValue.intValue());
+			}
 			updatePage();
 		});
+		searchHitsProperty().addListener((observable, oldValue, newValue) -> {
+			layoutHighlights();
+		});
+		continuousProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue) {
+				scrollToPage(getPageIndex());
+			} else {
+				clearPages();
+			}
+			update();
+		});
+		resizeTimer.setOnFinished(event -> {
+			resizing = false;
+			update();
+		});
 		widthProperty().addListener((observable, oldValue, newValue) -> {
 			updateSize();
 		});
 		heightProperty().addListener((observable, oldValue, newValue) -> {
 			updateSize();
 		});
+
+		zoomProperty().addListener((observable, oldValue, newValue) -> {
+			double value = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newValue.doubleValue()));
+			if (value != newValue.doubleValue()) {
+				setZoom(value);
+				return;
+			}
+			// 表示領域の中央を中心に拡大・縮小されるように移動量を補正します。
+			double ratio = value / oldValue.doubleValue();
+			if (Double.isFinite(ratio)) {
+				setPanX(getPanX() * ratio);
+				setPanY(getPanY() * ratio);
+				double center = getHeight() / 2;
+				scrollTop = (scrollTop + center) * ratio - center;
+			}
+			update();
+		});
+		panXProperty().addListener((observable, oldValue, newValue) -> {
+			update();
+		});
+		panYProperty().addListener((observable, oldValue, newValue) -> {
+			update();
+		});
+
+		addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+			dragX = event.getX();
+			dragY = event.getY();
+		});
+		addEventHandler(MouseEvent.MOUSE_DRAGGED, event -> {
+			if (isContinuous()) {
+				scroll(event.getX() - dragX, event.getY() - dragY);
+				dragX = event.getX();
+				dragY = event.getY();
+				event.consume();
+			} else if (getZoom() > MIN_ZOOM) {
+				pan(event.getX() - dragX, event.getY() - dragY);
+				dragX = event.getX();
+				dragY = event.getY();
+				event.consume();
+			}
+		});
+		addEventHandler(ScrollEvent.SCROLL, event -> {
+			if (event.isControlDown()) {
+				if (event.getDeltaY() > 0) {
+					setZoom(getZoom() * ZOOM_STEP);
+				} else if (event.getDeltaY() < 0) {
+					setZoom(getZoom() / ZOOM_STEP);
+				}
+				event.consume();
+			} else if (isContinuous()) {
+				scroll(event.getDeltaX(), event.getDeltaY());
+				event.consume();
+			} else if (getZoom() > MIN_ZOOM) {
+				pan(event.getDeltaX(), event.getDeltaY());
+				event.consume();
+			}
+		});
+	}
+
+	/** ホイール操作 1 回あたりの拡大率の変化です。 */
+	private static final double ZOOM_STEP = 1.25;
+
+	private double dragX;
+	private double dragY;
+
+	/** 拡大表示しているページを移動します。ページの端を越えて移動することはありません。
+	 *
+	 * @param dx 水平方向の移動量。
+	 * @param dy 垂直方向の移動量。
+	 */
+	public void pan(double dx, double dy) {
+		Rectangle2D bounds = getRenderBounds();
+		setPanX(clampPan(getPanX() + dx, getWidth(), bounds.getWidth()));
+		setPanY(clampPan(getPanY() + dy, getHeight(), bounds.getHeight()));
+	}
+
+	/** 連続スクロールモードで表示範囲をスクロールします。
+	 *
+	 * @param dx 水平方向の移動量。拡大表示している場合だけ移動します。
+	 * @param dy 垂直方向の移動量。
+	 */
+	private void scroll(double dx, double dy) {
+		if (dx != 0.0 && getZoom() > MIN_ZOOM) {
+			pan(dx, 0.0);
+		}
+		if (dy != 0.0) {
+			scrollTop -= dy;
+			update();
+		}
+	}
+
+	private static double clampPan(double pan, double viewSize, double pageSize) {
+		if (pageSize <= viewSize) {
+			return 0.0;
+		}
+		double limit = (pageSize - viewSize) / 2;
+		return Math.max(-limit, Math.min(limit, pan));
 	}
 
 	public void setRenderingHints(RenderingHints hints) {
@@ -197,161 +570,1421 @@ public final class PdfView extends Region {
 		return renderingHints;
 	}
 
+	/** この PdfView が使用しているレンダリングのサービスを返します。
+	 *
+	 * @return レンダリングのサービス。
+	 */
+	public RenderService getRenderService() {
+		return service;
+	}
+
+	/** レンダリング済みの画像を保持するキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * 表示したことのあるページは再レンダリングせずに直ちに表示されるようになります。
+	 * 0 を指定するとキャッシュは無効になります。
+	 * キャッシュは同じ {@link RenderService} を使用するすべての PdfView で共有されます。
+	 *
+	 * @param bytes キャッシュのサイズ（バイト）。
+	 */
+	public void setRenderCacheSize(long bytes) {
+		renderCache.setMaxBytes(Math.max(0L, bytes));
+	}
+
+	public long getRenderCacheSize() {
+		return renderCache.getMaxBytes();
+	}
+
+	/** ページ送りの方向に先読みするページ数を設定します。
+	 *
+	 * 先読みはワーカースレッドが空いているときにだけ行われ、
+	 * 先読みしたページはキャッシュに保持されます。
+	 *
+	 * @param count 先読みするページ数。
+	 */
+	public void setPrefetchAhead(int count) {
+		prefetchAhead = Math.max(0, count);
+	}
+
+	public int getPrefetchAhead() {
+		return prefetchAhead;
+	}
+
+	/** ページ送りと逆の方向に先読みするページ数を設定します。
+	 *
+	 * @param count 先読みするページ数。
+	 */
+	public void setPrefetchBehind(int count) {
+		prefetchBehind = Math.max(0, count);
+	}
+
+	public int getPrefetchBehind() {
+		return prefetchBehind;
+	}
+
+	/** 段階的なレンダリングを行うかどうかを設定します。
+	 *
+	 * 有効にすると、まずアンチエイリアスを無効にした低解像度の画像を表示し、
+	 * その後に設定されたレンダリングヒントで描画した画像に置き換えます。
+	 *
+	 * @param value 段階的なレンダリングを行う場合は true。
+	 */
+	public void setProgressiveRendering(boolean value) {
+		progressiveRendering = value;
+	}
+
+	public boolean isProgressiveRendering() {
+		return progressiveRendering;
+	}
+
+	/** ウィンドウの大きさを変更している間、再レンダリングを待つ時間（ミリ秒）を設定します。
+	 *
+	 * 大きさが変わると、まず表示中の画像を引き伸ばして表示し、指定した時間だけ大きさが変わらなかったときに再レンダリングします。
+	 * 新たに表示されるページなど、表示できる画像がない場合は直ちにレンダリングします。
+	 * 0 を指定すると、大きさが変わるたびに再レンダリングします。
+	 *
+	 * @param millis 再レンダリングを待つ時間（ミリ秒）。
+	 */
+	public void setResizeDelay(long millis) {
+		resizeDelay = Math.max(0L, millis);
+		resizeTimer.setDuration(Duration.millis(resizeDelay));
+	}
+
+	public long getResizeDelay() {
+		return resizeDelay;
+	}
+
+	/** 画像をレンダリングする倍率の段階の細かさを設定します。
+	 *
+	 * 倍率を 2 倍になるごとに指定した数の段階に丸め、表示に必要な倍率以上で最も近い段階の倍率でレンダリングします。
+	 * 表示する大きさが少し変わっただけでは同じ大きさの画像が使用されるため、再レンダリングせずにキャッシュの画像を再利用できます。
+	 * 段階を細かくするほど画質は向上し、再利用される機会は減ります。0 を指定すると表示する大きさのままレンダリングします。
+	 *
+	 * @param steps 倍率が 2 倍になるまでの段階の数。
+	 */
+	public void setRenderScaleSteps(int steps) {
+		renderScaleSteps = Math.max(0, steps);
+	}
+
+	public int getRenderScaleSteps() {
+		return renderScaleSteps;
+	}
+
+	/** ドキュメントを設定したときに全文検索の索引を作成するかどうかを設定します。
+	 *
+	 * 有効にすると、ドキュメントを設定した後にバックグラウンドでページのテキストを取り出して索引を作成します。
+	 * 無効にした場合は {@link #search(String)} は何も見つけません。次に設定したドキュメントから反映されます。
+	 *
+	 * @param value 索引を作成する場合は true。
+	 */
+	public void setTextIndexing(boolean value) {
+		textIndexing = value;
+	}
+
+	public boolean isTextIndexing() {
+		return textIndexing;
+	}
+
+	/** 表示中のドキュメントから文字列を検索します。
+	 *
+	 * 大文字と小文字は区別しません。連続する空白は 1 つの空白として扱い、行の区切りにも一致します。
+	 * 索引を作成している途中で呼び出した場合は、索引を作成し終わったページだけが検索の対象になります。
+	 * すべてのページを検索するには {@link #indexProgressProperty()} が 1.0 になってから呼び出します。
+	 *
+	 * @param query 検索する文字列。
+	 * @return 見つかった位置。ページ順に並びます。
+	 */
+	public List<SearchHit> search(String query) {
+		TextIndex index = textIndex;
+		if (index == null || index.getDocument() != getDocument()) {
+			return new ArrayList<>();
+		}
+		return index.search(query);
+	}
+
+	/** 索引の作成を開始するたびに更新され、それより前に開始した索引の作成を中止します。 */
+	private volatile long indexSequence;
+
+	/** ドキュメントの全文検索の索引の作成をバックグラウンドで開始します。
+	 *
+	 */
+	private void startIndexing(PDDocument document) {
+		long sequence = ++indexSequence;
+		indexProgressPropertyInternal().set(0.0);
+		if (document == null || !textIndexing) {
+			textIndex = null;
+			return;
+		}
+		// ページ数は索引を作成するスレッドで取得するため、FXアプリケーションスレッドで PDDocument を参照することはありません。
+		textIndex = TextIndex.buildInBackground(document, scheduler.executor(RenderScheduler.Priority.BACKGROUND), (indexed, count) -> {
+			// FXアプリケーションスレッドに通知する回数を抑えます。
+			if (indexed % INDEX_PROGRESS_INTERVAL == 0 || indexed == count) {
+				Platform.runLater(() -> {
+					if (sequence == indexSequence) {
+						indexProgressPropertyInternal().set((double)indexed / count);
+					}
+				});
+			}
+		}, () -> sequence != indexSequence);
+	}
+
+	/** 索引の作成の進捗を通知するページの間隔です。 */
+	private static final int INDEX_PROGRESS_INTERVAL = 32;
+
+	/** 検索結果の強調表示を表示中のページに合わせて配置します。
+	 *
+	 */
+	private void layoutHighlights() {
+		List<SearchHit> hits = getSearchHits();
+		double scale = getRenderScale();
+		if (hits == null || hits.isEmpty() || scale <= 0.0) {
+			highlightLayer.getChildren().clear();
+			return;
+		}
+
+		List<Node> shapes = new ArrayList<>();
+		for (SearchHit hit : hits) {
+			double x;
+			double y;
+			if (isContinuous()) {
+				PageSlot slot = pageSlots.get(hit.getPageIndex());
+				if (slot == null) {
+					continue;
+				}
+				x = slot.view.getX();
+				y = slot.view.getY();
+			} else {
+				if (hit.getPageIndex() != getPageIndex()) {
+					continue;
+				}
+				Rectangle2D bounds = getRenderBounds();
+				x = bounds.getMinX();
+				y = bounds.getMinY();
+			}
+			for (Rectangle2D r : hit.getBounds()) {
+				Rectangle shape = new Rectangle(x + r.getMinX() * scale, y + r.getMinY() * scale, r.getWidth() * scale, r.getHeight() * scale);
+				shape.getStyleClass().add("search-hit");
+				shapes.add(shape);
+			}
+		}
+		highlightLayer.getChildren().setAll(shapes);
+	}
+
+	/** File から読み込む際にメモリマップトファイルを使用するかどうかを設定します。
+	 *
+	 * 有効にすると、ファイルの内容をヒープに読み込まずに一時ファイルに複製してメモリにマップします。
+	 * 大きなファイルを開くときのヒープの使用量と待ち時間を減らすことができます。
+	 * 元のファイルは開いたままにならないため、読み込んだ後も上書きできます。
+	 *
+	 * @param value メモリマップトファイルを使用する場合は true。
+	 */
+	public void setMemoryMapping(boolean value) {
+		memoryMapping = value;
+	}
+
+	public boolean isMemoryMapping() {
+		return memoryMapping;
+	}
+
+	/** レンダリング済みの画像をディスクに保存するディレクトリを設定します。
+	 *
+	 * 設定すると、File またはバイト列から読み込んだドキュメントのページ画像が PDF の内容のハッシュ値をキーとして保存され、
+	 * 同じ内容の PDF を再び開いたときはレンダリングせずに保存した画像を表示します。
+	 * ドキュメントを読み込む前に設定する必要があります。
+	 *
+	 * @param directory 画像を保存するディレクトリ。null の場合はディスクキャッシュを使用しません。
+	 */
+	public void setDiskCacheDirectory(File directory) {
+		// 書き込みは入出力を待つため、レンダリングのスレッドではなく RenderService の入出力用の Executor で行います。
+		// 後から Executor が変更されても反映されるように、書き込むたびに取得します。
+		diskCache = (directory != null) ? new DiskCache(directory, diskCacheSize, task -> service.getIoExecutor().execute(task)) : null;
+	}
+
+	public File getDiskCacheDirectory() {
+		DiskCache disk = diskCache;
+		return (disk != null) ? disk.getDirectory() : null;
+	}
+
+	/** ディスクキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * 合計サイズが超えた場合は最も長く参照されていない画像から削除します。
+	 *
+	 * @param bytes ディスクキャッシュのサイズ（バイト）。
+	 */
+	public void setDiskCacheSize(long bytes) {
+		diskCacheSize = Math.max(0L, bytes);
+		DiskCache disk = diskCache;
+		if (disk != null) {
+			disk.setMaxBytes(diskCacheSize);
+		}
+	}
+
+	public long getDiskCacheSize() {
+		return diskCacheSize;
+	}
+
+	/** レンダリングと読み込みの計測結果を受け取るリスナーを追加します。
+	 *
+	 * @param listener 追加するリスナー。
+	 */
+	public void addRenderListener(RenderListener listener) {
+		renderListeners.add(Objects.requireNonNull(listener));
+	}
+
+	public void removeRenderListener(RenderListener listener) {
+		renderListeners.remove(listener);
+	}
+
+	/** 計測結果をリスナーと JDK Flight Recorder に通知します。FXアプリケーションスレッドで呼び出されます。
+	 *
+	 */
+	private void publish(RenderMetrics metrics) {
+		RenderEvent.commit(metrics);
+		for(RenderListener listener : renderListeners) {
+			listener.rendered(metrics);
+		}
+	}
+
+	private void publish(LoadMetrics metrics) {
+		LoadEvent.commit(metrics);
+		for(RenderListener listener : renderListeners) {
+			listener.loaded(metrics);
+		}
+	}
+
 	public void updatePage() {
 		update();
 	}
 
+	/** 大きさが変わったときに表示を更新します。
+	 *
+	 * 大きさの変更が続いている間は表示中の画像を引き伸ばして表示し、再レンダリングは変更が終わるまで待ちます。
+	 */
 	public void updateSize() {
+		if (resizeDelay > 0L) {
+			resizing = true;
+			resizeTimer.playFromStart();
+		}
 		update();
 	}
 
-	private volatile boolean isBusy = false;
-	private volatile boolean isFollowed = false;
+	/** 実行を始める前に次の要求に置き換えられて、次のレンダリングにまとめられた表示の要求の数です。 */
+	private int coalescedRequests;
+
+	private double paperWidth = 0.0;
+	private double paperHeight = 0.0;
+
+	/** ImageView を PdfView の中央に表示されるようにします。
+	 *
+	 * 拡大表示している場合は移動量に応じてずらして表示します。
+	 */
+	private void adjustCenter() {
+		if(paperWidth > 0.0 && paperHeight > 0.0) {
+			double pdfViewWidth = getWidth();
+			double pdfViewHeight = getHeight();
+			Dimension2D size = fit(paperWidth, paperHeight, pdfViewWidth, pdfViewHeight);
+			double w = size.getWidth() * getZoom();
+			double h = size.getHeight() * getZoom();
+			double x = (pdfViewWidth - w) / 2 + clampPan(getPanX(), pdfViewWidth, w);
+			double y = (pdfViewHeight - h) / 2 + clampPan(getPanY(), pdfViewHeight, h);
+			double scale = h / paperHeight;
+			imageView.setX(x);
+			imageView.setY(y);
+			imageView.setFitWidth(w);
+			imageView.setFitHeight(h);
+			renderScalePropertyInternal().set(scale);
+			renderBoundsPropertyInternal().set(new Rectangle2D(x, y, w, h));
+			layoutTiles();
+		} else {
+			imageView.setX(0.0);
+			imageView.setY(0.0);
+			imageView.setFitWidth(0.0);
+			imageView.setFitHeight(0.0);
+			renderScalePropertyInternal().set(0.0);
+			renderBoundsPropertyInternal().set(Rectangle2D.EMPTY);
+		}
+		layoutHighlights();
+	}
+
+	/** 最後に表示した画像の要求番号です。FXアプリケーションスレッドからのみアクセスします。 */
+	private long displayedRequest;
+	private long lastRequest;
+
+	/** 直近のページ送りの方向です。前方なら 1、後方なら -1 です。 */
+	private int direction = 1;
+
+	/** 表示の要求があるたびに更新され、それより前に要求された先読みを取り消します。 */
+	private volatile long prefetchGeneration;
+
+	private void update() {
+		long generation = ++prefetchGeneration;
+		long requested = System.nanoTime();
+
+		if(isContinuous()) {
+			updateContinuous();
+			return;
+		}
+		clearPages();
+
+		int pageIndex = getPageIndex();
+		PDDocument document = getDocument();
+		PageGeometry g = geometry;
+		if(document != null && g != null && g.getDocument() == document && pageIndex < g.getPageCount()) {
+			// FXアプリケーションスレッドで PDF のオブジェクトを参照しないように、ページの大きさは表から取得します。
+			paperWidth = g.getWidth(pageIndex);
+			paperHeight = g.getHeight(pageIndex);
+		} else {
+			// 表を作成し終わるまでは何も表示しません。作成し終わると表示が更新されます。
+			paperWidth = 0.0;
+			paperHeight = 0.0;
+		}
+
+		RenderingHints hints = getRenderingHints();
+
+		Screen screen = getScreen(this);
+		if(screen == null) {
+			screen = Screen.getPrimary();
+		}
+		double width = getWidth() * screen.getOutputScaleX();
+		double height = getHeight() * screen.getOutputScaleY();
+
+		if(document == null || paperWidth <= 0.0 || paperHeight <= 0.0) {
+			cancelJob(null, null);
+			displayedRequest = ++lastRequest;
+			show(imageView, null);
+			displayedKey = null;
+			clearTiles();
+			adjustCenter();
+			return;
+		}
+		RenderCache.Key key = createKey(document, pageIndex, hints, new Dimension2D(paperWidth, paperHeight), width, height);
+		if(key == null) {
+			cancelJob(null, null);
+			clearTiles();
+			adjustCenter();
+			return;
+		}
+		RenderCache.Key tilePage = (getZoom() > MIN_ZOOM)
+				? new RenderCache.Key(document, pageIndex, (int)(key.getWidth() * getZoom()), (int)(key.getHeight() * getZoom()), hints)
+				: null;
+		cancelJob(key, tilePage);
+
+		// キャッシュにある画像はワーカースレッドを経由せずに直ちに表示します。
+		// 拡大表示している場合、ページ全体の画像はタイルがそろうまでの代わりとして引き伸ばして表示します。
+		RenderBuffer cached = renderCache.acquire(key);
+		if(cached != null) {
+			displayedRequest = ++lastRequest;
+			show(imageView, cached);
+			displayedKey = key;
+			publish(new RenderTiming(requested, 0).toMetrics(key, RenderMetrics.Type.PAGE, RenderMetrics.Source.MEMORY_CACHE, 0L, true, cached.getBytes()));
+		} else if(resizing && displayedKey != null && displayedKey.getDocument() == document && displayedKey.getPageIndex() == pageIndex) {
+			// 大きさの変更が終わるまでは表示中の画像とタイルを引き伸ばして表示します。
+			adjustCenter();
+			return;
+		}
+		adjustCenter();
+		List<RenderCache.Key> tiles = updateTiles(tilePage);
+		if(cached != null && tiles.isEmpty()) {
+			prefetch(generation, document, pageIndex, hints, width, height);
+			return;
+		}
+
+		// 同じ内容をレンダリングしている場合は、それが終わるのを待ちます。
+		RenderJob previous = job;
+		if(previous != null && !previous.done && !previous.isTilesCancelled() && tiles.equals(previous.tiles)) {
+			coalescedRequests++;
+			return;
+		}
+		// まだ実行を始めていないレンダリングは、この要求に置き換えます。
+		if(previous != null && !previous.started) {
+			previous.cancel();
+			coalescedRequests++;
+		}
+
+		long request = ++lastRequest;
+		RenderJob job = new RenderJob(key, tilePage, tiles);
+		this.job = job;
+		RenderTiming timing = new RenderTiming(requested, coalescedRequests);
+		coalescedRequests = 0;
+
+		Runnable submit = () -> {
+			job.ticket = scheduler.submit(RenderScheduler.Priority.VISIBLE, requested, key, () -> {
+				job.started = true;
+				timing.start();
+				try {
+					if(cached == null && !job.pageLoaded) {
+						renderPage(request, job, timing, document, pageIndex, hints, key);
+					}
+					if(!tiles.isEmpty() && !job.isTilesCancelled()) {
+						renderTiles(job, timing, document, pageIndex, hints, tiles);
+					}
+				} finally {
+					Platform.runLater(() -> {
+						job.done = true;
+						if(!job.isPageCancelled()) {
+							prefetch(generation, document, pageIndex, hints, width, height);
+						}
+					});
+				}
+			});
+			// 入出力用のスレッドから投入した場合は、投入する前に取り消されていることがあります。
+			if(job.isPageCancelled()) {
+				job.ticket.cancel();
+			}
+		};
+		if(cached == null) {
+			loadFromDisk(key, timing, job::isPageCancelled, stored -> {
+				job.pageLoaded = true;
+				display(request, timing, key, stored);
+				submit.run();
+			}, submit);
+		} else {
+			submit.run();
+		}
+	}
+
+	/** 実行中のレンダリングです。FXアプリケーションスレッドからのみアクセスします。 */
+	private RenderJob job;
+
+	/** 実行中のレンダリングが表示する内容と合わなくなった場合は取り消します。
+	 *
+	 * @param key これから表示するページ全体の画像のキー。
+	 * @param tilePage これから表示するタイルのページ全体のキー。タイルを使用しない場合は null。
+	 */
+	private void cancelJob(RenderCache.Key key, RenderCache.Key tilePage) {
+		if(job == null) {
+			return;
+		}
+		if(key == null || !key.equals(job.key)) {
+			job.cancel();
+		} else if(!Objects.equals(tilePage, job.tilePage)) {
+			job.tilesCancelled = true;
+		}
+	}
+
+	/** ページ全体の画像をレンダリングして表示します。ワーカースレッドで実行されます。
+	 *
+	 */
+	private void renderPage(long request, RenderJob job, RenderTiming timing, PDDocument document, int pageIndex, RenderingHints hints, RenderCache.Key key) {
+		try {
+			renderPage(request, timing, document, pageIndex, hints, key, job::isPageCancelled);
+		} catch(CancellationException e) {
+			// 表示する内容が変わったため、レンダリングを中断しました。
+		}
+	}
+
+	private void renderPage(long request, RenderTiming timing, PDDocument document, int pageIndex, RenderingHints hints, RenderCache.Key key, BooleanSupplier cancelled) {
+		if(progressiveRendering) {
+			int w = Math.max(1, key.getWidth() / PREVIEW_RATIO);
+			int h = Math.max(1, key.getHeight() / PREVIEW_RATIO);
+			long previewStart = System.nanoTime();
+			RenderBuffer preview = renderPool.apply(document, instance -> createImage(document, instance, pageIndex, createPreviewHints(), w, h, true, cancelled));
+			long previewNanos = System.nanoTime() - previewStart;
+			RenderCache.Key previewKey = new RenderCache.Key(document, pageIndex, w, h, null);
+
+			Platform.runLater(() -> {
+				// 本来の画像を表示できるように displayedRequest は更新しません。
+				boolean displayed = (request > displayedRequest);
+				long conversionStart = System.nanoTime();
+				if(displayed) {
+					preview.update(preview.getViewport());
+					show(imageView, preview);
+				}
+				long conversionNanos = System.nanoTime() - conversionStart;
+				publish(timing.toMetrics(previewKey, RenderMetrics.Type.PREVIEW, RenderMetrics.Source.RENDERED, previewNanos, conversionNanos, displayed, preview.getBytes()));
+				if(!displayed) {
+					preview.release();
+				}
+			});
+
+			// 表示するページが変わった場合は本来の画像のレンダリングを省略します。
+			if(cancelled.getAsBoolean()) {
+				return;
+			}
+		}
+
+		DiskCache disk = diskCache;
+		long start = System.nanoTime();
+		// 同じ画像を別の PdfView がレンダリングしている場合はそれを使用します。
+		RenderBuffer image = service.render(key, cancelled,
+				() -> renderPool.apply(document, instance -> createImage(document, instance, pageIndex, hints, key.getWidth(), key.getHeight(), false, cancelled)));
+		timing.rendered(RenderMetrics.Source.RENDERED, System.nanoTime() - start);
+		if(disk != null) {
+			disk.put(key, image);
+		}
+		display(request, timing, key, image);
+	}
+
+	/** ディスクキャッシュにある画像を入出力用のスレッドで読み込みます。ディスクキャッシュになければ miss を実行します。
+	 *
+	 * ファイルの読み込みと展開でレンダリングのスレッドを占有しないように、レンダリングのスレッドに投入する前に読み込みます。
+	 * ディスクキャッシュにないことがわかっている場合は、入出力用のスレッドを経由せずに直ちに miss を実行します。
+	 * 読み込む前に取り消された場合は、hit と miss のどちらも実行しません。
+	 *
+	 * @param key ページ全体の画像のキー。
+	 * @param timing 読み込みにかかった時間を記録する RenderTiming。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @param hit 読み込んだ画像を受け取る処理。画像はキャッシュに格納され、呼び出し元が保持していた参照は hit に引き継がれます。
+	 * @param miss ディスクキャッシュになかった場合の処理。
+	 */
+	private void loadFromDisk(RenderCache.Key key, RenderTiming timing, BooleanSupplier cancelled, Consumer<RenderBuffer> hit, Runnable miss) {
+		DiskCache disk = diskCache;
+		if(disk == null || !disk.mayContain(key)) {
+			miss.run();
+			return;
+		}
+		service.getIoExecutor().execute(() -> {
+			if(cancelled.getAsBoolean()) {
+				return;
+			}
+			timing.start();
+			long start = System.nanoTime();
+			RenderBuffer stored = disk.get(key, bufferPool);
+			if(stored == null) {
+				miss.run();
+				return;
+			}
+			timing.rendered(RenderMetrics.Source.DISK_CACHE, System.nanoTime() - start);
+			renderCache.put(key, stored);
+			hit.accept(stored);
+		});
+	}
+
+	/** レンダリングしたページ全体の画像を表示します。
+	 *
+	 * 呼び出し元が保持していたバッファの参照は表示に引き継がれます。
+	 */
+	private void display(long request, RenderTiming timing, RenderCache.Key key, RenderBuffer image) {
+		RenderMetrics.Source source = timing.source;
+		long renderNanos = timing.renderNanos;
+		Platform.runLater(() -> {
+			// 後から表示したキャッシュ済みの画像を古い画像で上書きしないようにします。
+			boolean displayed = (request > displayedRequest);
+			long conversionStart = System.nanoTime();
+			if(displayed) {
+				displayedRequest = request;
+				image.update(image.getViewport());
+				show(imageView, image);
+				displayedKey = key;
+			}
+			long conversionNanos = System.nanoTime() - conversionStart;
+			publish(timing.toMetrics(key, RenderMetrics.Type.PAGE, source, renderNanos, conversionNanos, displayed, image.getBytes()));
+			if(!displayed) {
+				image.release();
+			}
+		});
+	}
+
+	/** レンダリングの計測に使用する時刻です。 */
+	private static final class RenderTiming {
+		private final long requested;
+		private final int coalescedRequests;
+		private final long submitted = System.nanoTime();
+		private volatile long started;
+		private volatile RenderMetrics.Source source = RenderMetrics.Source.RENDERED;
+		private volatile long renderNanos;
+
+		/** 表示の要求があった時刻と、その要求にまとめられた要求の数を指定します。ワーカースレッドに投入する直前に作成します。 */
+		private RenderTiming(long requested, int coalescedRequests) {
+			this.requested = requested;
+			this.coalescedRequests = coalescedRequests;
+		}
+
+		/** ワーカースレッドで実行が始まったときに呼び出します。 */
+		private void start() {
+			started = System.nanoTime();
+		}
+
+		private void rendered(RenderMetrics.Source source, long renderNanos) {
+			this.source = source;
+			this.renderNanos = renderNanos;
+		}
+
+		private long getQueueWaitNanos() {
+			return (started != 0L) ? started - submitted : 0L;
+		}
+
+		private RenderMetrics toMetrics(RenderCache.Key key, RenderMetrics.Type type, RenderMetrics.Source source, long conversionNanos, boolean displayed, long bytes) {
+			return toMetrics(key, type, source, renderNanos, conversionNanos, displayed, bytes);
+		}
+
+		private RenderMetrics toMetrics(RenderCache.Key key, RenderMetrics.Type type, RenderMetrics.Source source, long renderNanos, long conversionNanos, boolean displayed, long bytes) {
+			return new RenderMetrics(key.getDocument(), key.getPageIndex(), key.getRegionWidth(), key.getRegionHeight(), type, source,
+					getQueueWaitNanos(), renderNanos, conversionNanos, displayed ? System.nanoTime() - requested : -1L, bytes, coalescedRequests);
+		}
+	}
+
+	/** 連続スクロールモードでページの上下に空ける間隔です。 */
+	private static final double PAGE_GAP = 8.0;
+
+	/** 連続スクロールモードで表示範囲の前後にレンダリングしておく範囲です。表示範囲の高さに対する比率で表します。 */
+	private static final double PAGE_MARGIN = 1.0;
+
+	/** 連続スクロールモードでレンダリングする 1 ページの最大のピクセル数です。表示範囲のピクセル数に対する比率で表します。 */
+	private static final double MAX_PAGE_PIXELS = 4.0;
+
+	/** 連続スクロールモードで配置しているページです。キーはページ番号です。FXアプリケーションスレッドからのみアクセスします。 */
+	private final Map<Integer, PageSlot> pageSlots = new HashMap<>();
+
+	/** ページの大きさの表です。FXアプリケーションスレッドからのみアクセスします。 */
+	private PageGeometry geometry;
+	private PDDocument geometryRequested;
+	/** 読み込みの際に見積もったページの大きさの表です。ドキュメントを設定するときに geometry に移されます。 */
+	private PageGeometry loadedGeometry;
+
+	/** 連続スクロールモードでのスクロール位置です。PdfView の座標系で表します。 */
+	private double scrollTop;
+
+	/** スクロールに合わせて pageIndex を更新している間は true になります。 */
+	private boolean trackingPageIndex;
+
+	/** 連続スクロールモードでページを配置し、表示範囲とその前後のページをレンダリングします。
+	 *
+	 * ページの配置にはページの大きさの表だけを使用するため、FXアプリケーションスレッドで PDF のオブジェクトを参照しません。
+	 */
+	private void updateContinuous() {
+		cancelJob(null, null);
+		if(imageView.getUserData() != null) {
+			displayedRequest = ++lastRequest;
+			show(imageView, null);
+			displayedKey = null;
+		}
+		clearTiles();
+
+		PDDocument document = getDocument();
+		PageGeometry g = geometry;
+		double viewWidth = getWidth();
+		double viewHeight = getHeight();
+		double scale = (g != null) ? getContinuousScale(g) : 0.0;
+		if(document == null || g == null || g.getDocument() != document || g.getPageCount() == 0 || scale <= 0.0 || viewHeight <= 0.0) {
+			clearPages();
+			renderScalePropertyInternal().set(0.0);
+			renderBoundsPropertyInternal().set(Rectangle2D.EMPTY);
+			layoutHighlights();
+			if(document != null && (g == null || g.getDocument() != document)) {
+				requestGeometry(document);
+			}
+			return;
+		}
+
+		int count = g.getPageCount();
+		double contentWidth = g.getMaxWidth() * scale + PAGE_GAP * 2;
+		double contentHeight = getPageTop(g, scale, count);
+		scrollTop = Math.max(0.0, Math.min(contentHeight - viewHeight, scrollTop));
+		double left = (viewWidth - contentWidth) / 2 + clampPan(getPanX(), viewWidth, contentWidth);
+
+		Screen screen = getScreen(this);
+		if(screen == null) {
+			screen = Screen.getPrimary();
+		}
+		double outputScaleX = screen.getOutputScaleX();
+		double outputScaleY = screen.getOutputScaleY();
+		// 拡大表示している場合も 1 ページのピクセル数は制限し、それを超える分は引き伸ばして表示します。
+		double maxPixels = viewWidth * outputScaleX * viewHeight * outputScaleY * MAX_PAGE_PIXELS;
+		RenderingHints hints = getRenderingHints();
+
+		double margin = viewHeight * PAGE_MARGIN;
+		Map<Integer, PageSlot> slots = new LinkedHashMap<>();
+		List<PageSlot> missing = new ArrayList<>();
+		int current = -1;
+		double currentVisible = 0.0;
+		Rectangle2D currentBounds = Rectangle2D.EMPTY;
+		for(int i = findPage(g, scale, scrollTop - margin); i < count; i++) {
+			double y = getPageTop(g, scale, i) - scrollTop;
+			if(y > viewHeight + margin) {
+				break;
+			}
+			double w = g.getWidth(i) * scale;
+			double h = g.getHeight(i) * scale;
+			double x = left + PAGE_GAP + (g.getMaxWidth() * scale - w) / 2;
+			double visible = Math.min(y + h, viewHeight) - Math.max(y, 0.0);
+			if(visible > currentVisible) {
+				current = i;
+				currentVisible = visible;
+				currentBounds = new Rectangle2D(x, y, w, h);
+			}
+
+			double pixelWidth = w * outputScaleX;
+			double pixelHeight = h * outputScaleY;
+			if(pixelWidth * pixelHeight > maxPixels) {
+				double ratio = Math.sqrt(maxPixels / (pixelWidth * pixelHeight));
+				pixelWidth *= ratio;
+				pixelHeight *= ratio;
+			}
+			RenderCache.Key key = createKey(document, i, hints, new Dimension2D(g.getWidth(i), g.getHeight(i)), pixelWidth, pixelHeight);
+			if(key == null) {
+				continue;
+			}
+
+			PageSlot slot = pageSlots.remove(i);
+			if(slot == null) {
+				slot = new PageSlot();
+			}
+			// 大きさが変わった場合は、新しい画像がそろうまで古い画像を引き伸ばして表示します。
+			slot.setKey(key);
+			slot.view.setX(x);
+			slot.view.setY(y);
+			slot.view.setFitWidth(w);
+			slot.view.setFitHeight(h);
+			if(!key.equals(slot.shownKey)) {
+				RenderBuffer cached = renderCache.acquire(key);
+				if(cached != null) {
+					show(slot.view, cached);
+					slot.shownKey = key;
+				} else if(slot.job == null && !(resizing && slot.shownKey != null)) {
+					// 大きさの変更が終わるまでは表示中の画像を引き伸ばして表示します。
+					missing.add(slot);
+				}
+			}
+			slots.put(i, slot);
+		}
+		for(PageSlot slot : pageSlots.values()) {
+			slot.dispose();
+		}
+		pageSlots.clear();
+		pageSlots.putAll(slots);
+		List<Node> views = new ArrayList<>();
+		for(PageSlot slot : slots.values()) {
+			views.add(slot.view);
+		}
+		pageLayer.getChildren().setAll(views);
+
+		renderScalePropertyInternal().set(scale);
+		renderBoundsPropertyInternal().set(currentBounds);
+		layoutHighlights();
+		if(current >= 0 && current != getPageIndex()) {
+			trackingPageIndex = true;
+			try {
+				setPageIndex(current);
+			} finally {
+				trackingPageIndex = false;
+			}
+		}
+
+		// 表示範囲の中央に近いページからレンダリングします。
+		double center = scrollTop + viewHeight / 2;
+		missing.sort(Comparator.comparingDouble(slot -> {
+			int i = slot.key.getPageIndex();
+			return Math.abs(getPageTop(g, scale, i) + g.getHeight(i) * scale / 2 - center);
+		}));
+		long requested = System.nanoTime();
+		for(int n = 0; n < missing.size(); n++) {
+			PageSlot slot = missing.get(n);
+			RenderJob job = new RenderJob(slot.key, null, Collections.emptyList());
+			slot.job = job;
+			int pageIndex = job.key.getPageIndex();
+			RenderTiming timing = new RenderTiming(requested, 0);
+			long deadline = requested + n;
+			// ディスクキャッシュにある画像は入出力用のスレッドで読み込み、なければレンダリングのスレッドに投入します。
+			loadFromDisk(job.key, timing, job::isPageCancelled, buffer -> displaySlot(pageIndex, job, timing, buffer), () -> {
+				// 中央から離れたページほど期限を遅くして、中央に近いページから順にレンダリングします。
+				job.ticket = scheduler.submit(RenderScheduler.Priority.VISIBLE, deadline, job.key, () -> {
+					job.started = true;
+					timing.start();
+					if(job.isPageCancelled()) {
+						return;
+					}
+					try {
+						displaySlot(pageIndex, job, timing, render(document, job.key, hints, timing, job::isPageCancelled));
+					} catch(CancellationException e) {
+						// 表示範囲から外れたため、レンダリングを中断しました。
+					}
+				});
+				// 入出力用のスレッドから投入した場合は、投入する前に取り消されていることがあります。
+				if(job.isPageCancelled()) {
+					job.ticket.cancel();
+				}
+			});
+		}
+	}
+
+	/** 連続スクロールモードでレンダリングしたページを表示します。
+	 *
+	 * 呼び出し元が保持していたバッファの参照は表示に引き継がれます。
+	 */
+	private void displaySlot(int pageIndex, RenderJob job, RenderTiming timing, RenderBuffer buffer) {
+		Platform.runLater(() -> {
+			PageSlot s = pageSlots.get(pageIndex);
+			boolean displayed = (s != null && s.job == job);
+			long conversionStart = System.nanoTime();
+			if(displayed) {
+				s.job = null;
+				s.shownKey = job.key;
+				buffer.update(buffer.getViewport());
+				show(s.view, buffer);
+			}
+			long conversionNanos = System.nanoTime() - conversionStart;
+			publish(timing.toMetrics(job.key, RenderMetrics.Type.PAGE, timing.source, conversionNanos, displayed, buffer.getBytes()));
+			if(!displayed) {
+				buffer.release();
+			}
+		});
+	}
+
+	/** ページの大きさの表を入出力用のスレッドで作成します。作成し終わったら表示を更新します。
+	 *
+	 * ページツリーをすべてたどるため、レンダリングのスレッドを占有しないように入出力用の Executor で作成します。
+	 */
+	private void requestGeometry(PDDocument document) {
+		if(geometryRequested == document) {
+			return;
+		}
+		geometryRequested = document;
+		service.getIoExecutor().execute(() -> {
+			// スレッドごとに開き直したドキュメントではなく元のドキュメントの表を作成します。
+			PageGeometry g;
+			synchronized (document) {
+				g = PageGeometry.build(document);
+			}
+			Platform.runLater(() -> {
+				if(getDocument() == document) {
+					geometry = g;
+					scrollToPage(getPageIndex());
+					update();
+				}
+			});
+		});
+	}
+
+	/** 連続スクロールモードで指定したページの上端までスクロールします。
+	 *
+	 */
+	private void scrollToPage(int pageIndex) {
+		PageGeometry g = geometry;
+		if(g == null || g.getDocument() != getDocument() || pageIndex < 0 || pageIndex >= g.getPageCount()) {
+			return;
+		}
+		scrollTop = getPageTop(g, getContinuousScale(g), pageIndex) - PAGE_GAP;
+	}
+
+	/** 連続スクロールモードでの拡大率を返します。最も幅の広いページが PdfView の幅に収まる拡大率が基準になります。
+	 *
+	 */
+	private double getContinuousScale(PageGeometry g) {
+		double width = Math.max(0.0, getWidth() - PAGE_GAP * 2) * getZoom();
+		return (g.getMaxWidth() > 0.0) ? width / g.getMaxWidth() : 0.0;
+	}
+
+	/** 連続スクロールモードでのページの上端の位置を返します。
+	 *
+	 */
+	private static double getPageTop(PageGeometry g, double scale, int pageIndex) {
+		return PAGE_GAP + pageIndex * PAGE_GAP + g.getOffset(pageIndex) * scale;
+	}
+
+	/** 指定した位置より下に下端があるページのうち、最初のページを返します。
+	 *
+	 */
+	private static int findPage(PageGeometry g, double scale, double y) {
+		int low = 0;
+		int high = g.getPageCount() - 1;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(getPageTop(g, scale, mid) + g.getHeight(mid) * scale < y) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void clearPages() {
+		for(PageSlot slot : pageSlots.values()) {
+			slot.dispose();
+		}
+		pageSlots.clear();
+		pageLayer.getChildren().clear();
+	}
+
+	/** 連続スクロールモードで配置している 1 ページ分の画像です。 */
+	private static final class PageSlot {
+		private final ImageView view = new ImageView();
+		/** 表示する画像のキーです。 */
+		private RenderCache.Key key;
+		/** 表示中の画像のキーです。 */
+		private RenderCache.Key shownKey;
+		/** 実行中のレンダリングです。 */
+		private RenderJob job;
+
+		private void setKey(RenderCache.Key key) {
+			if(job != null && !job.key.equals(key)) {
+				job.cancel();
+				job = null;
+			}
+			this.key = key;
+		}
+
+		private void dispose() {
+			if(job != null) {
+				job.cancel();
+				job = null;
+			}
+			show(view, null);
+			shownKey = null;
+		}
+	}
+
+	/** ページ全体の画像をレンダリングし、ディスクキャッシュに保存します。ワーカースレッドで実行されます。
+	 *
+	 * ディスクキャッシュからの読み込みはレンダリングのスレッドに投入する前に {@link #loadFromDisk} で行います。
+	 */
+	private RenderBuffer render(PDDocument document, RenderCache.Key key, RenderingHints hints, RenderTiming timing, BooleanSupplier cancelled) {
+		return service.render(key, cancelled, () -> {
+			DiskCache disk = diskCache;
+			long start = System.nanoTime();
+			RenderBuffer buffer = renderPool.apply(document, instance -> createImage(document, instance, key.getPageIndex(), hints, key.getWidth(), key.getHeight(), false, cancelled));
+			timing.rendered(RenderMetrics.Source.RENDERED, System.nanoTime() - start);
+			if(disk != null) {
+				disk.put(key, buffer);
+			}
+			return buffer;
+		});
+	}
+
+	/** タイルの一辺の長さ（ピクセル）です。 */
+	private static final int TILE_SIZE = 256;
 
-	private double paperWidth = 0.0;
-	private double paperHeight = 0.0;
+	/** 表示中のタイルです。FXアプリケーションスレッドからのみアクセスします。 */
+	private final Map<RenderCache.Key, ImageView> tileViews = new LinkedHashMap<>();
 
-	/** ImageView を PdfView の中央に表示されるようにします。
+	/** 表示範囲に含まれるタイルを配置し、キャッシュにないタイルを返します。
 	 *
+	 * 拡大表示していない場合はタイルを使用しません。
 	 */
-	private void adjustCenter() {
-		if(paperWidth > 0.0 && paperHeight > 0.0) {
-			double pdfViewWidth = getWidth();
-			double pdfViewHeight = getHeight();
-			double w;
-			double h;
-			if (paperWidth / paperHeight < pdfViewWidth / pdfViewHeight) {
-				w = pdfViewHeight * paperWidth / paperHeight;
-				h = pdfViewHeight;
-			} else {
-				w = pdfViewWidth;
-				h = pdfViewWidth * paperHeight / paperWidth;
-			}
-			double x = (pdfViewWidth - w) / 2;
-			double y = (pdfViewHeight - h) / 2;
-			double scale = h / paperHeight;
-			imageView.setX(x);
-			imageView.setY(y);
-			imageView.setFitWidth(w);
-			imageView.setFitHeight(h);
-			renderScalePropertyInternal().set(scale);
-			renderBoundsPropertyInternal().set(new Rectangle2D(x, y, w, h));
-		} else {
-			imageView.setX(0.0);
-			imageView.setY(0.0);
-			imageView.setFitWidth(0.0);
-			imageView.setFitHeight(0.0);
-			renderScalePropertyInternal().set(0.0);
-			renderBoundsPropertyInternal().set(Rectangle2D.EMPTY);
+	private List<RenderCache.Key> updateTiles(RenderCache.Key tilePage) {
+		if(tilePage == null) {
+			clearTiles();
+			return Collections.emptyList();
 		}
-	}
 
-	private void update() {
-		synchronized (worker) {
-			if(isFollowed) {
-				adjustCenter();
-				return;
-			}
-			if(isBusy) {
-				isFollowed = true;
-				adjustCenter();
-				return;
+		Rectangle2D bounds = getRenderBounds();
+		int pageWidth = tilePage.getWidth();
+		int pageHeight = tilePage.getHeight();
+		double sx = pageWidth / bounds.getWidth();
+		double sy = pageHeight / bounds.getHeight();
+		int x0 = (int)Math.max(0.0, Math.floor(-bounds.getMinX() * sx));
+		int y0 = (int)Math.max(0.0, Math.floor(-bounds.getMinY() * sy));
+		int x1 = (int)Math.min(pageWidth, Math.ceil((getWidth() - bounds.getMinX()) * sx));
+		int y1 = (int)Math.min(pageHeight, Math.ceil((getHeight() - bounds.getMinY()) * sy));
+
+		Map<RenderCache.Key, ImageView> views = new LinkedHashMap<>();
+		List<RenderCache.Key> missing = new ArrayList<>();
+		for(int y = y0 / TILE_SIZE * TILE_SIZE; y < y1; y += TILE_SIZE) {
+			for(int x = x0 / TILE_SIZE * TILE_SIZE; x < x1; x += TILE_SIZE) {
+				int w = Math.min(TILE_SIZE, pageWidth - x);
+				int h = Math.min(TILE_SIZE, pageHeight - y);
+				RenderCache.Key tile = new RenderCache.Key(tilePage.getDocument(), tilePage.getPageIndex(), pageWidth, pageHeight, tilePage.getHints(), x, y, w, h);
+				ImageView view = tileViews.remove(tile);
+				if(view == null) {
+					view = new ImageView();
+				}
+				if(view.getUserData() == null) {
+					RenderBuffer buffer = renderCache.acquire(tile);
+					if(buffer != null) {
+						show(view, buffer);
+					} else {
+						missing.add(tile);
+					}
+				}
+				views.put(tile, view);
 			}
-			isBusy = true;
 		}
+		for(ImageView view : tileViews.values()) {
+			show(view, null);
+		}
+		tileViews.clear();
+		tileViews.putAll(views);
+		tileLayer.getChildren().setAll(views.values());
+		layoutTiles();
+		return missing;
+	}
 
-		int pageIndex = getPageIndex();
-		PDDocument document = getDocument();
-		if(document == null) {
-			paperWidth = 0.0;
-			paperHeight = 0.0;
-			imageView.setImage(null);
-		} else {
-			PDRectangle paper = document.getPage(pageIndex).getCropBox();
-			int rotation = document.getPage(pageIndex).getRotation();
-			paperWidth = (rotation % 180 == 0) ? paper.getWidth() : paper.getHeight();
-			paperHeight = (rotation % 180 == 0) ? paper.getHeight() : paper.getWidth();
+	private void layoutTiles() {
+		Rectangle2D bounds = getRenderBounds();
+		for(Map.Entry<RenderCache.Key, ImageView> entry : tileViews.entrySet()) {
+			RenderCache.Key tile = entry.getKey();
+			ImageView view = entry.getValue();
+			double sx = bounds.getWidth() / tile.getWidth();
+			double sy = bounds.getHeight() / tile.getHeight();
+			// 隣り合うタイルの間に隙間ができないように端の座標から大きさを求めます。
+			double left = bounds.getMinX() + tile.getRegionX() * sx;
+			double top = bounds.getMinY() + tile.getRegionY() * sy;
+			double right = bounds.getMinX() + (tile.getRegionX() + tile.getRegionWidth()) * sx;
+			double bottom = bounds.getMinY() + (tile.getRegionY() + tile.getRegionHeight()) * sy;
+			view.setX(left);
+			view.setY(top);
+			view.setFitWidth(right - left);
+			view.setFitHeight(bottom - top);
 		}
-		adjustCenter();
+	}
 
-		RenderingHints hints = getRenderingHints();
+	private void clearTiles() {
+		for(ImageView view : tileViews.values()) {
+			show(view, null);
+		}
+		tileViews.clear();
+		tileLayer.getChildren().clear();
+	}
 
-		Screen screen = getScreen(this);
-		if(screen == null) {
-			screen = Screen.getPrimary();
+	/** タイルをレンダリングして表示します。ワーカースレッドで実行されます。
+	 *
+	 * ページの解析を一度で済ませるため、タイルをすべて含む範囲をまとめてレンダリングしてからタイルに切り分けます。
+	 * まとめてレンダリングするバッファも RenderBufferPool から取得するため、必要なメモリは表示範囲の大きさに収まり、
+	 * スクロールのたびに新しいバッファを確保することもありません。
+	 */
+	private void renderTiles(RenderJob job, RenderTiming timing, PDDocument document, int pageIndex, RenderingHints hints, List<RenderCache.Key> tiles) {
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = 0;
+		int maxY = 0;
+		for(RenderCache.Key tile : tiles) {
+			minX = Math.min(minX, tile.getRegionX());
+			minY = Math.min(minY, tile.getRegionY());
+			maxX = Math.max(maxX, tile.getRegionX() + tile.getRegionWidth());
+			maxY = Math.max(maxY, tile.getRegionY() + tile.getRegionHeight());
 		}
-		double width = getWidth() * screen.getOutputScaleX();
-		double height = getHeight() * screen.getOutputScaleY();
+		int width = maxX - minX;
+		int height = maxY - minY;
 
-		worker.submit(() -> {
-			WritableImage image = createImage(document, pageIndex, hints, width, height);
+		RenderCache.Key first = tiles.get(0);
+		int offsetX = minX;
+		int offsetY = minY;
 
-			Platform.runLater(() -> {
-				if(image != null) {
-					imageView.setImage(image);
+		long start = System.nanoTime();
+		RenderBuffer buffer = bufferPool.acquire(width, height);
+		try {
+			renderPool.apply(document, instance -> {
+				Dimension2D paper = getPaperSize(instance, pageIndex);
+				double scale = Math.min(first.getWidth() / paper.getWidth(), first.getHeight() / paper.getHeight());
+
+				Graphics2D graphics = null;
+				try {
+					graphics = buffer.createGraphics();
+					graphics.setBackground(Color.WHITE);
+					graphics.clearRect(0, 0, width, height);
+					graphics.translate(-offsetX, -offsetY);
+
+					displayListCache.draw(document, instance, pageIndex, graphics, (float)scale, hints, job::isTilesCancelled);
+					return null;
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				} finally {
+					if (graphics != null) {
+						graphics.dispose();
+					}
 				}
 			});
+		} catch(CancellationException e) {
+			// 表示範囲が変わったため、レンダリングを中断しました。
+			buffer.release();
+			return;
+		} catch(RuntimeException e) {
+			buffer.release();
+			throw e;
+		}
 
-			synchronized (worker) {
-				if(isFollowed) {
-					isFollowed = false;
-					isBusy = false;
-					Platform.runLater(() -> {
-						update();
-					});
+		int[] pixels = buffer.getPixels();
+		int stride = buffer.getCapacityWidth();
+		List<RenderBuffer> tileBuffers = new ArrayList<>(tiles.size());
+		long bytes = 0L;
+		for(RenderCache.Key tile : tiles) {
+			RenderBuffer tileBuffer = bufferPool.acquire(tile.getRegionWidth(), tile.getRegionHeight());
+			int[] tilePixels = tileBuffer.getPixels();
+			int scanline = tileBuffer.getCapacityWidth();
+			for(int y = 0; y < tile.getRegionHeight(); y++) {
+				int offset = (tile.getRegionY() - minY + y) * stride + (tile.getRegionX() - minX);
+				System.arraycopy(pixels, offset, tilePixels, y * scanline, tile.getRegionWidth());
+			}
+			renderCache.put(tile, tileBuffer);
+			tileBuffers.add(tileBuffer);
+			bytes += tileBuffer.getBytes();
+		}
+		buffer.release();
+		long renderNanos = System.nanoTime() - start;
+		RenderCache.Key region = new RenderCache.Key(document, pageIndex, first.getWidth(), first.getHeight(), hints, minX, minY, width, height);
+		long totalBytes = bytes;
+
+		// タイルごとに Platform.runLater を呼び出さずに、まとめて表示します。
+		Platform.runLater(() -> {
+			boolean displayed = false;
+			long conversionStart = System.nanoTime();
+			for(int i = 0; i < tiles.size(); i++) {
+				RenderBuffer tileBuffer = tileBuffers.get(i);
+				ImageView view = tileViews.get(tiles.get(i));
+				if(view != null && view.getUserData() == null) {
+					tileBuffer.update(tileBuffer.getViewport());
+					show(view, tileBuffer);
+					displayed = true;
 				} else {
-					isBusy = false;
+					tileBuffer.release();
 				}
 			}
+			long conversionNanos = System.nanoTime() - conversionStart;
+			publish(timing.toMetrics(region, RenderMetrics.Type.TILES, RenderMetrics.Source.RENDERED, renderNanos, conversionNanos, displayed, totalBytes));
 		});
 	}
 
-	private BufferedImage bimg;
-	private WritableImage wimg;
+	/** 投入した先読みです。FXアプリケーションスレッドからのみアクセスします。 */
+	private Map<RenderCache.Key, RenderScheduler.Ticket> prefetchTickets = new HashMap<>();
 
-	private WritableImage createImage(PDDocument document, int pageIndex, RenderingHints renderingHints, double width, double height) {
-		if (document == null) {
+	/** 表示中のページの前後のページを先読みしてキャッシュに格納します。
+	 *
+	 * 先読みは 1 ページずつ表示中のページより低い優先度で投入されるため、表示中のページのレンダリングを待たせることはありません。
+	 * 先読みする範囲から外れたページの先読みは取り消されます。
+	 */
+	private void prefetch(long generation, PDDocument document, int pageIndex, RenderingHints hints, double width, double height) {
+		if(generation != prefetchGeneration || getDocument() != document) {
+			return;
+		}
+
+		// キャッシュに収まらない枚数を先読みしても表示中のページを追い出すだけなので、先読みする枚数を制限します。
+		PageGeometry g = geometry;
+		if(g == null || g.getDocument() != document) {
+			return;
+		}
+		long pageBytes = (long)width * (long)height * 4L;
+		long capacity = (pageBytes > 0) ? renderCache.getMaxBytes() / pageBytes - 1 : 0;
+		int max = g.getPageCount() - 1;
+
+		List<Integer> pages = new ArrayList<>();
+		for(int i = 1; i <= prefetchAhead; i++) {
+			pages.add(pageIndex + direction * i);
+		}
+		for(int i = 1; i <= prefetchBehind; i++) {
+			pages.add(pageIndex - direction * i);
+		}
+		pages.removeIf(i -> i < 0 || i > max);
+		if(pages.size() > capacity) {
+			pages = pages.subList(0, (int)Math.max(0, capacity));
+		}
+
+		long requested = System.nanoTime();
+		Map<RenderCache.Key, RenderScheduler.Ticket> tickets = new HashMap<>();
+		for(int n = 0; n < pages.size(); n++) {
+			int i = pages.get(n);
+			RenderCache.Key key = createKey(document, i, hints, new Dimension2D(g.getWidth(i), g.getHeight(i)), width, height);
+			if(key == null || renderCache.contains(key)) {
+				continue;
+			}
+			RenderTiming timing = new RenderTiming(requested, 0);
+			Runnable task = () -> {
+				timing.start();
+				// 別の PdfView がレンダリングするのを待つことがあるため、ドキュメントを排他制御していない状態で呼び出します。
+				// 表示中のページのために中断した場合は CancellationException がスローされ、スケジューラーが後で実行し直します。
+				RenderBuffer buffer = render(document, key, hints, timing, RenderScheduler::isCancelled);
+				publishPrefetch(key, timing, buffer);
+			};
+			DiskCache disk = diskCache;
+			if(disk != null && disk.mayContain(key)) {
+				// ディスクキャッシュにある画像は入出力用のスレッドで読み込みます。
+				// 読み込めなかった場合だけレンダリングのスレッドに投入するため、その先読みは範囲から外れても取り消しません。
+				long deadline = requested + n;
+				loadFromDisk(key, timing, () -> generation != prefetchGeneration, buffer -> publishPrefetch(key, timing, buffer),
+						() -> scheduler.submit(RenderScheduler.Priority.PREFETCH, deadline, key, task));
+				continue;
+			}
+			// 近いページから順に先読みします。同じページの先読みが実行を待っている場合はそれが使用されます。
+			tickets.put(key, scheduler.submit(RenderScheduler.Priority.PREFETCH, requested + n, key, task));
+		}
+		// 先読みする範囲から外れたページの先読みは取り消します。
+		for(Map.Entry<RenderCache.Key, RenderScheduler.Ticket> entry : prefetchTickets.entrySet()) {
+			if(tickets.get(entry.getKey()) != entry.getValue()) {
+				entry.getValue().cancel();
+			}
+		}
+		prefetchTickets = tickets;
+	}
+
+	private void publishPrefetch(RenderCache.Key key, RenderTiming timing, RenderBuffer buffer) {
+		RenderMetrics metrics = timing.toMetrics(key, RenderMetrics.Type.PREFETCH, timing.source, 0L, false, buffer.getBytes());
+		buffer.release();
+		Platform.runLater(() -> publish(metrics));
+	}
+
+	/** 先読みを取り消します。
+	 *
+	 */
+	private void cancelPrefetch() {
+		for(RenderScheduler.Ticket ticket : prefetchTickets.values()) {
+			ticket.cancel();
+		}
+		prefetchTickets = new HashMap<>();
+	}
+
+	/** 指定した領域に収まるページの画像のキーを返します。
+	 *
+	 * 倍率の段階が設定されている場合は、領域に収まる倍率以上で最も近い段階の倍率を使用します。
+	 * 画像は表示する際に ImageView で縮小されます。
+	 */
+	private RenderCache.Key createKey(PDDocument document, int pageIndex, RenderingHints hints, Dimension2D paper, double width, double height) {
+		double paperWidth = paper.getWidth();
+		double paperHeight = paper.getHeight();
+		if(paperWidth <= 0.0 || paperHeight <= 0.0 || width <= 0.0 || height <= 0.0) {
+			return null;
+		}
+		Dimension2D size = fit(paperWidth, paperHeight, width, height);
+		int w = (int)size.getWidth();
+		int h = (int)size.getHeight();
+		int steps = renderScaleSteps;
+		if(steps > 0 && w > 0 && h > 0) {
+			double scale = size.getWidth() / paperWidth;
+			// 誤差で 1 つ上の段階にならないように、わずかに小さくしてから切り上げます。
+			double level = Math.ceil(Math.log(scale) / Math.log(2.0) * steps - 1e-9);
+			double bucket = Math.pow(2.0, level / steps);
+			w = (int)Math.round(paperWidth * bucket);
+			h = (int)Math.round(paperHeight * bucket);
+		}
+		if(w <= 0 || h <= 0) {
 			return null;
 		}
-		PDRectangle paper = document.getPage(pageIndex).getCropBox();
-		int rotation = document.getPage(pageIndex).getRotation();
-		double paperWidth = (rotation % 180 == 0) ? paper.getWidth() : paper.getHeight();
-		double paperHeight = (rotation % 180 == 0) ? paper.getHeight() : paper.getWidth();
+		return new RenderCache.Key(document, pageIndex, w, h, hints);
+	}
 
-		double w;
-		double h;
-		if (paperWidth / paperHeight < width / height) {
-			w = height * paperWidth / paperHeight;
-			h = height;
-		} else {
-			w = width;
-			h = width * paperHeight / paperWidth;
+	/** 実行中のレンダリングを取り消すためのトークンです。 */
+	private static final class RenderJob {
+		private final RenderCache.Key key;
+		private final RenderCache.Key tilePage;
+		private final List<RenderCache.Key> tiles;
+		/** レンダリングのスレッドに投入した処理です。ディスクキャッシュから読み込めなかった場合は入出力用のスレッドで設定されます。 */
+		private volatile RenderScheduler.Ticket ticket;
+		private volatile boolean pageCancelled;
+		private volatile boolean tilesCancelled;
+		/** ページ全体の画像をディスクキャッシュから読み込むと true になります。 */
+		private volatile boolean pageLoaded;
+		/** ワーカースレッドで実行を始めると true になります。 */
+		private volatile boolean started;
+		/** 実行が終わると true になります。FXアプリケーションスレッドからのみアクセスします。 */
+		private boolean done;
+
+		private RenderJob(RenderCache.Key key, RenderCache.Key tilePage, List<RenderCache.Key> tiles) {
+			this.key = key;
+			this.tilePage = tilePage;
+			this.tiles = tiles;
+		}
+
+		/** レンダリングを取り消します。まだ実行を始めていない場合は実行しません。
+		 *
+		 */
+		private void cancel() {
+			pageCancelled = true;
+			if(ticket != null) {
+				ticket.cancel();
+			}
 		}
-		double scale = h / paperHeight;
 
-		if (bimg == null || bimg.getWidth() != (int) w || bimg.getHeight() != (int) h) {
-			bimg = new BufferedImage((int) w, (int) h, BufferedImage.TYPE_INT_RGB);
-			wimg = new WritableImage((int) w, (int) h);
+		private boolean isPageCancelled() {
+			return pageCancelled;
 		}
+
+		private boolean isTilesCancelled() {
+			return pageCancelled || tilesCancelled;
+		}
+	}
+
+	/** 段階的なレンダリングで最初に表示する画像の縮小率です。 */
+	private static final int PREVIEW_RATIO = 4;
+
+	/** ページをレンダリングしたバッファを返します。
+	 *
+	 * 描画したピクセルをコピーせずにそのまま表示できるように、JavaFX の画像とピクセルを共有するバッファに描画します。
+	 * プレビューでなければページの描画命令を記録し、別の大きさでレンダリングし直すときは記録した描画命令を再生します。
+	 * 返されたバッファは呼び出し元が参照を 1 つ保持しているため、不要になったら解放する必要があります。
+	 */
+	private RenderBuffer createImage(PDDocument document, PDDocument instance, int pageIndex, RenderingHints renderingHints, int width, int height, boolean preview, BooleanSupplier cancelled) {
+		return createImage(bufferPool, preview ? null : displayListCache, document, instance, pageIndex, renderingHints, width, height, preview, cancelled);
+	}
+
+	static RenderBuffer createImage(RenderBufferPool bufferPool, PDDocument document, int pageIndex, RenderingHints renderingHints, int width, int height, boolean preview, BooleanSupplier cancelled) {
+		return createImage(bufferPool, null, document, document, pageIndex, renderingHints, width, height, preview, cancelled);
+	}
+
+	private static RenderBuffer createImage(RenderBufferPool bufferPool, DisplayListCache displayListCache, PDDocument document, PDDocument instance, int pageIndex, RenderingHints renderingHints, int width, int height, boolean preview, BooleanSupplier cancelled) {
+		Dimension2D paper = getPaperSize(instance, pageIndex);
+		double scale = Math.min(width / paper.getWidth(), height / paper.getHeight());
+
+		RenderBuffer buffer = bufferPool.acquire(width, height);
+		boolean completed = false;
 		Graphics2D graphics = null;
 		try {
-			graphics = bimg.createGraphics();
+			graphics = buffer.createGraphics();
 			graphics.setBackground(Color.WHITE);
-			graphics.clearRect(0, 0, (int) w, (int) h);
+			graphics.clearRect(0, 0, width, height);
 
-			PDFRenderer renderer = new PDFRenderer(document);
-			if (renderingHints != null) {
-				renderer.setRenderingHints(renderingHints);
+			if(displayListCache != null) {
+				displayListCache.draw(document, instance, pageIndex, graphics, (float)scale, renderingHints, cancelled);
+			} else {
+				PageRenderer.draw(instance, pageIndex, graphics, (float)scale, renderingHints, preview, cancelled);
 			}
-			renderer.renderPageToGraphics(pageIndex, graphics, (float)scale);
-			return SwingFXUtils.toFXImage(bimg, wimg);
+			completed = true;
+			return buffer;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		} finally {
 			if (graphics != null) {
 				graphics.dispose();
 			}
+			if (!completed) {
+				buffer.release();
+			}
+		}
+	}
+
+	private static RenderingHints createPreviewHints() {
+		RenderingHints hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		hints.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+		hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+		hints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		return hints;
+	}
+
+	/** ImageView にバッファの画像を表示します。
+	 *
+	 * 呼び出し元が保持していたバッファの参照は ImageView に引き継がれ、
+	 * それまで表示していたバッファの参照は解放されます。
+	 * キャッシュから取得したバッファは、プールで再利用されて描画し直された後に JavaFX に通知されていないことがあるため、
+	 * 通知していない変更があれば表示する前に通知します。
+	 *
+	 * @param view 画像を表示する ImageView。
+	 * @param buffer 表示するバッファ。null の場合は何も表示しません。
+	 */
+	static void show(ImageView view, RenderBuffer buffer) {
+		RenderBuffer old = (RenderBuffer)view.getUserData();
+		view.setUserData(buffer);
+		if (buffer != null) {
+			buffer.updateIfDirty();
+			view.setImage(buffer.getImage());
+			view.setViewport(buffer.getViewport());
+		} else {
+			view.setImage(null);
+			view.setViewport(null);
+		}
+		if (old != null) {
+			old.release();
+		}
+	}
+
+	/** ページの回転を考慮したクロップボックスのサイズを返します。
+	 *
+	 */
+	static Dimension2D getPaperSize(PDDocument document, int pageIndex) {
+		PDRectangle paper = PageRenderer.getPageSize(document.getPage(pageIndex));
+		return new Dimension2D(paper.getWidth(), paper.getHeight());
+	}
+
+	/** 用紙の縦横比を保ったまま指定した領域に収まるサイズを返します。
+	 *
+	 */
+	static Dimension2D fit(double paperWidth, double paperHeight, double width, double height) {
+		double w;
+		double h;
+		if (paperWidth / paperHeight < width / height) {
+			w = height * paperWidth / paperHeight;
+			h = height;
+		} else {
+			w = width;
+			h = width * paperHeight / paperWidth;
 		}
+		return new Dimension2D(w, h);
 	}
 
 
@@ -364,36 +1997,126 @@ public final class PdfView extends Region {
 		super.layoutChildren();
 	}
 
+	/** 読み込みを開始するたびに更新され、それより前に開始したフォントの読み込みを中止します。 */
+	private volatile long loadSequence;
+
+	/** 読み込みの進捗のうち、バイト列を読み込み終えるまでの割合です。 */
+	private static final double LOAD_READ_PROGRESS = 0.7;
+	/** 読み込みの進捗のうち、解析を終えるまでの割合です。残りは最初に表示するページのフォントの読み込みです。 */
+	private static final double LOAD_PARSE_PROGRESS = 0.9;
+
+	/** 進捗を報告しながらドキュメントやバイト列を読み込む処理です。
+	 *
+	 */
+	private interface Loader<T> {
+		T load(LoadProgress progress) throws Exception;
+	}
+
+	/** 読み込みの進捗を Task に報告します。
+	 *
+	 */
+	private interface LoadProgress {
+
+		/** 読み込んだバイト数を報告します。
+		 *
+		 * @param bytes 読み込んだバイト数。
+		 * @param total 全体のバイト数。不明な場合は -1。
+		 */
+		void read(long bytes, long total);
+
+		/** バイト列を読み終えて解析を始めたことを報告します。
+		 *
+		 */
+		void parsing();
+	}
+
+	/** 埋め込まれていないフォントの代替を探すために作成するフォントキャッシュの保存先を設定します。
+	 *
+	 * フォントキャッシュにはシステムのフォントを走査した結果が保存され、次回以降の起動ではフォントの再走査が省略されます。
+	 * 設定しない場合はユーザーのホームディレクトリに保存されます。
+	 * 最初のドキュメントを読み込む前に呼び出す必要があります。
+	 *
+	 * @param directory フォントキャッシュを保存するディレクトリ。null の場合は設定する前の場所に戻します。
+	 */
+	public static void setFontCacheDirectory(File directory) {
+		FontWarmUp.setCacheDirectory(directory);
+	}
+
+	public static File getFontCacheDirectory() {
+		return FontWarmUp.getCacheDirectory();
+	}
+
 	public Task<PDDocument> load(Callable<PDDocument> loader) {
 		return load(loader, 0);
 	}
 
 	public Task<PDDocument> load(Callable<PDDocument> loader, final int initialPageIndex) {
+		return load(progress -> loader.call(), initialPageIndex);
+	}
+
+	/** ドキュメントを読み込み、最初に表示するページのフォントを読み込んだ時点で表示します。
+	 *
+	 * 返される Task の進捗は、バイト列の読み込み、解析、フォントの読み込みの順に 0 から 1 まで進みます。
+	 * ストリームの長さが分からない場合、バイト列を読み込んでいる間の進捗は不明（-1）になります。
+	 * 残りのページのフォントはドキュメントを表示した後にバックグラウンドで読み込みます。
+	 */
+	private Task<PDDocument> load(Loader<PDDocument> loader, final int initialPageIndex) {
+		long sequence = ++loadSequence;
+		long requested = System.nanoTime();
 		Task<PDDocument> task = new Task<PDDocument>() {
 			@Override
 			protected PDDocument call() throws Exception {
 				Exception exception = null;
 				try {
-					PDDocument document = loader.call();
+					long started = System.nanoTime();
 
-					// フォントを読み込ませるために最大10ページを事前にレンダリングします。
-					Graphics2D graphics = null;
-					try {
-						PDFRenderer renderer = new PDFRenderer(document);
-						BufferedImage bimg = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
-						graphics = bimg.createGraphics();
-						int max = Math.min(10, document.getNumberOfPages());
-						for (int i = 0; i < max; i++) {
-							renderer.renderPageToGraphics(i, graphics);
+					// システムのフォントの読み込みをドキュメントの解析と並行して行います。
+					FontWarmUp.initializeMapper(service.getIoExecutor());
+
+					PDDocument document = loader.load(new LoadProgress() {
+						@Override
+						public void read(long bytes, long total) {
+							if(total > 0) {
+								updateProgress(LOAD_READ_PROGRESS * Math.min(bytes, total) / total, 1.0);
+							} else {
+								updateProgress(-1, 1.0);
+							}
+						}
+
+						@Override
+						public void parsing() {
+							updateProgress(LOAD_READ_PROGRESS, 1.0);
 						}
-					} finally {
-						if (graphics != null) {
-							graphics.dispose();
+					});
+					long parsed = System.nanoTime();
+					updateProgress(LOAD_PARSE_PROGRESS, 1.0);
+
+					// 先読みしたフォントがレンダリングで使用されるように、先読みの前に共有のリソースキャッシュを設定します。
+					renderPool.prepare(document);
+
+					// 最初に表示するページのフォントだけを読み込んでから表示し、残りのページのフォントはバックグラウンドで読み込みます。
+					int count = document.getNumberOfPages();
+					PageGeometry estimate = null;
+					if (count > 0) {
+						int first = Math.max(0, Math.min(count - 1, initialPageIndex));
+						Set<COSBase> visited = FontWarmUp.createVisitedSet();
+						synchronized (document) {
+							FontWarmUp.warmUp(document, first, visited);
+							// すべてのページの大きさの表は表示した後に作成するため、ここでは最初のページの大きさから見積もります。
+							estimate = PageGeometry.estimate(document, first);
 						}
+						// 残りのページは表示中のページのレンダリングを待たせないように、空いている時間に読み込みます。
+						FontWarmUp.warmUpInBackground(renderPool, document, first, visited, scheduler.executor(RenderScheduler.Priority.BACKGROUND), () -> sequence != loadSequence);
 					}
+					long warmedUp = System.nanoTime();
+
+					updateProgress(1.0, 1.0);
 
+					PageGeometry geometry = estimate;
 					Platform.runLater(() -> {
+						loadedGeometry = geometry;
 						setDocument(document, initialPageIndex);
+						publish(new LoadMetrics(document, count, started - requested, parsed - started, warmedUp - parsed, System.nanoTime() - requested));
 					});
 					return document;
 				} catch(Exception e) {
@@ -402,6 +2125,8 @@ public final class PdfView extends Region {
 					final Exception e = exception;
 
 					Platform.runLater(() -> {
+						progressIndicator.progressProperty().unbind();
+						progressIndicator.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
 						progressIndicator.setVisible(false);
 
 						// ワーカースレッドで例外が発生していた場合、UIスレッドでその例外をスローします。
@@ -418,222 +2143,266 @@ public final class PdfView extends Region {
 			}
 		};
 
+		// 読み込みは入出力を待つため、レンダリングのスレッドではなく RenderService の入出力用の Executor で行います。
+		// FXアプリケーションスレッド以外から呼び出された場合も、表示の初期化を待たずに戻ります。
+		// 初期化は読み込んだドキュメントの表示より先にFXアプリケーションスレッドのキューに入るため、順序は保たれます。
 		if(Platform.isFxApplicationThread()) {
 			setDocument(null);
+			progressIndicator.progressProperty().bind(task.progressProperty());
 			progressIndicator.setVisible(true);
-			worker.execute(task);
 		} else {
-			try {
-				runAndWait(() -> {
-					setDocument(null);
-					progressIndicator.setVisible(true);
-				});
-				task.run();
-			} catch(Throwable t) {
-				throw new RuntimeException(t);
-			}
+			Platform.runLater(() -> {
+				setDocument(null);
+				progressIndicator.progressProperty().bind(task.progressProperty());
+				progressIndicator.setVisible(true);
+			});
 		}
+		service.getIoExecutor().execute(task);
 		return task;
 	}
 
 	public Task<PDDocument> load(File file) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes());
-			}
-		}, 0);
+		return load(file, 0, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes());
-			}
-		}, initialPageIndex);
+		return load(file, initialPageIndex, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, MemoryUsageSetting memUsageSetting) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), "", null, null, memUsageSetting);
-			}
-		}, 0);
+		return load(file, 0, "", null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex, MemoryUsageSetting memUsageSetting) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), "", null, null, memUsageSetting);
-			}
-		}, initialPageIndex);
+		return load(file, initialPageIndex, "", null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(File file, String password) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password);
-			}
-		}, 0);
+		return load(file, 0, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex, String password) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password);
-			}
-		}, initialPageIndex);
+		return load(file, initialPageIndex, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, String password, MemoryUsageSetting memUsageSetting) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, null, null, memUsageSetting);
-			}
-		}, 0);
+		return load(file, 0, password, null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex, String password, MemoryUsageSetting memUsageSetting) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, null, null, memUsageSetting);
-			}
-		}, initialPageIndex);
+		return load(file, initialPageIndex, password, null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(File file, String password, InputStream keyStore, String alias) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, keyStore, alias);
-			}
-		}, 0);
+		return load(file, 0, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex, String password, InputStream keyStore, String alias) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, keyStore, alias);
-			}
-		}, initialPageIndex);
+		return load(file, initialPageIndex, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(File file, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
-		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
-		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, keyStore, alias, memUsageSetting);
-			}
-		}, 0);
+		return load(file, 0, password, keyStore, alias, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(File file, int initialPageIndex, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
+		if(memoryMapping) {
+			return loadMapped(file, initialPageIndex, password, keyStore, alias, memUsageSetting);
+		}
 		// PDDocument.loadにFileを渡すとファイルがオープンされたままになり
 		// 上書き保存できなくなってしまうため、先にバイト列を取得してそれをPDDocument.loadに渡します。
-		return load(() -> {
-			try(InputStream is = new FileInputStream(file)) {
-				return PDDocument.load(is.readAllBytes(), password, keyStore, alias, memUsageSetting);
+		return loadBytes(progress -> {
+			long length = file.length();
+			try(InputStream is = new ProgressInputStream(new FileInputStream(file), bytes -> progress.read(bytes, length))) {
+				return is.readAllBytes();
 			}
-		}, initialPageIndex);
+		}, initialPageIndex, password, keyStore, alias, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(InputStream input) {
-		return load(() -> PDDocument.load(input), 0);
+		return load(input, 0, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, int initialPageIndex) {
-		return load(() -> PDDocument.load(input), initialPageIndex);
+		return load(input, initialPageIndex, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, memUsageSetting), 0);
+		return load(input, 0, "", null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(InputStream input, int initialPageIndex, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, memUsageSetting), initialPageIndex);
+		return load(input, initialPageIndex, "", null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(InputStream input, String password) {
-		return load(() -> PDDocument.load(input, password), 0);
+		return load(input, 0, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, int initialPageIndex, String password) {
-		return load(() -> PDDocument.load(input, password), initialPageIndex);
+		return load(input, initialPageIndex, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, String password, InputStream keyStore, String alias) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias), 0);
+		return load(input, 0, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, int initialPageIndex, String password, InputStream keyStore, String alias) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias), initialPageIndex);
+		return load(input, initialPageIndex, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(InputStream input, String password, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, memUsageSetting), 0);
+		return load(input, 0, password, null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(InputStream input, int initialPageIndex, String password, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, memUsageSetting), initialPageIndex);
+		return load(input, initialPageIndex, password, null, null, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(InputStream input, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias, memUsageSetting), 0);
+		return load(input, 0, password, keyStore, alias, memUsageSetting);
 	}
 
+	/** InputStream から PDDocument を読み込みます。
+	 *
+	 * ストリームの内容を読み込んでいる間は、読み込んだバイト数を Task の進捗として報告します。
+	 * 長さが分かるのは FileInputStream の場合だけで、それ以外のストリームでは進捗は不明になります。
+	 * PDF は末尾にある相互参照表から解析するため、ストリームを最後まで読み込んでから解析します。
+	 */
 	public Task<PDDocument> load(InputStream input, int initialPageIndex, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias, memUsageSetting), initialPageIndex);
+		return load(progress -> {
+			long length = getRemainingLength(input);
+			ScratchFile scratchFile = new ScratchFile(memUsageSetting);
+			try {
+				RandomAccessRead source = scratchFile.createBuffer(new ProgressInputStream(input, bytes -> progress.read(bytes, length)));
+				progress.parsing();
+				PDFParser parser = new PDFParser(source, password, keyStore, alias, scratchFile);
+				parser.parse();
+				return parser.getPDDocument();
+			} catch(IOException e) {
+				scratchFile.close();
+				throw e;
+			}
+		}, initialPageIndex);
 	}
 
 	public Task<PDDocument> load(byte[] input) {
-		return load(() -> PDDocument.load(input), 0);
+		return load(input, 0, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, int initialPageIndex) {
-		return load(() -> PDDocument.load(input), initialPageIndex);
+		return load(input, initialPageIndex, "", null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, String password) {
-		return load(() -> PDDocument.load(input, password), 0);
+		return load(input, 0, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, int initialPageIndex, String password) {
-		return load(() -> PDDocument.load(input, password), initialPageIndex);
+		return load(input, initialPageIndex, password, null, null, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, String password, InputStream keyStore, String alias) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias), 0);
+		return load(input, 0, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, int initialPageIndex, String password, InputStream keyStore, String alias) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias), initialPageIndex);
+		return load(input, initialPageIndex, password, keyStore, alias, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
 	public Task<PDDocument> load(byte[] input, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias, memUsageSetting), 0);
+		return load(input, 0, password, keyStore, alias, memUsageSetting);
 	}
 
 	public Task<PDDocument> load(byte[] input, int initialPageIndex, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
-		return load(() -> PDDocument.load(input, password, keyStore, alias, memUsageSetting), initialPageIndex);
+		return loadBytes(progress -> input, initialPageIndex, password, keyStore, alias, memUsageSetting);
+	}
+
+	/** ストリームの残りのバイト数を返します。
+	 *
+	 * @return 残りのバイト数。分からない場合は -1。
+	 */
+	private static long getRemainingLength(InputStream input) {
+		if(input instanceof FileInputStream) {
+			try {
+				FileChannel channel = ((FileInputStream)input).getChannel();
+				return channel.size() - channel.position();
+			} catch(IOException ignore) {
+			}
+		}
+		return -1;
+	}
+
+	/** バイト列から PDDocument を読み込みます。
+	 *
+	 * 複数のスレッドでレンダリングする場合にスレッドごとに開き直せるように、
+	 * 読み込んだバイト列を RenderPool に登録します。
+	 */
+	private Task<PDDocument> loadBytes(Loader<byte[]> source, int initialPageIndex, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
+		return load(progress -> {
+			byte[] input = source.load(progress);
+			progress.parsing();
+			// サムネイルのディスクキャッシュにも使用するため、いずれかのディスクキャッシュが作成されていればハッシュ値を計算します。
+			String contentHash = DiskCache.isUsed() ? DiskCache.hash(input) : null;
+			// キーストアは何度も読み込めるようにバイト列として保持します。
+			byte[] keyStoreBytes = (keyStore != null) ? keyStore.readAllBytes() : null;
+			Callable<PDDocument> opener = () -> PDDocument.load(input, password,
+					(keyStoreBytes != null) ? new ByteArrayInputStream(keyStoreBytes) : null,
+					alias, memUsageSetting);
+			PDDocument document = opener.call();
+			renderPool.register(document, opener);
+			if(contentHash != null) {
+				DiskCache.register(document, contentHash);
+			}
+			return document;
+		}, initialPageIndex);
+	}
+
+	/** ファイルを一時ファイルに複製してメモリにマップし、PDDocument を読み込みます。
+	 *
+	 * スレッドごとに開き直す PDDocument はマップした内容を共有します。
+	 */
+	private Task<PDDocument> loadMapped(File file, int initialPageIndex, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) {
+		return load(progress -> {
+			// 一時ファイルへの複製はファイル全体を読み込むため、読み込みの進捗として報告します。
+			long length = file.length();
+			MappedFile mapped = MappedFile.snapshot(file, bytes -> progress.read(bytes, length));
+			progress.parsing();
+			String contentHash = null;
+			if(DiskCache.isUsed()) {
+				try(RandomAccessRead reader = mapped.newReader()) {
+					contentHash = DiskCache.hash(new RandomAccessInputStream(reader));
+				}
+			}
+			// キーストアは何度も読み込めるようにバイト列として保持します。
+			byte[] keyStoreBytes = (keyStore != null) ? keyStore.readAllBytes() : null;
+			Callable<PDDocument> opener = () -> load(mapped.newReader(), password,
+					(keyStoreBytes != null) ? new ByteArrayInputStream(keyStoreBytes) : null,
+					alias, memUsageSetting);
+			PDDocument document = opener.call();
+			renderPool.register(document, opener);
+			if(contentHash != null) {
+				DiskCache.register(document, contentHash);
+			}
+			return document;
+		}, initialPageIndex);
+	}
+
+	/** RandomAccessRead から PDDocument を読み込みます。
+	 *
+	 * 読み込んだ PDDocument を閉じると RandomAccessRead も閉じられます。
+	 */
+	static PDDocument load(RandomAccessRead source, String password, InputStream keyStore, String alias, MemoryUsageSetting memUsageSetting) throws IOException {
+		ScratchFile scratchFile = new ScratchFile(memUsageSetting);
+		try {
+			PDFParser parser = new PDFParser(source, password, keyStore, alias, scratchFile);
+			parser.parse();
+			return parser.getPDDocument();
+		} catch(IOException e) {
+			scratchFile.close();
+			source.close();
+			throw e;
+		}
 	}
 
 	protected static void runAndWait(Runnable runnable) throws InterruptedException, InvocationTargetException {
@@ -0,0 +1,83 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/** 読み込んだバイト数を報告する InputStream です。
+ *
+ * 低速なストリームから読み込んでいる間の進捗を表示するために使用します。
+ * 報告は読み込みを呼び出したスレッドで行われます。
+ */
+final class ProgressInputStream extends FilterInputStream {
+
+	/** 報告する間隔（バイト）です。 */
+	private static final long REPORT_INTERVAL = 64L * 1024L;
+
+	private final LongConsumer progress;
+	private long bytes;
+	private long reported;
+
+	/** InputStream を作成します。
+	 *
+	 * @param in 読み込むストリーム。
+	 * @param progress 読み込んだバイト数の合計を渡して呼び出される処理。
+	 */
+	ProgressInputStream(InputStream in, LongConsumer progress) {
+		super(in);
+		this.progress = progress;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if(b >= 0) {
+			advance(1);
+		} else {
+			finish();
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if(n > 0) {
+			advance(n);
+		} else if(n < 0) {
+			finish();
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		if(skipped > 0) {
+			advance(skipped);
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		// 読み直した分を二重に数えないように mark と reset には対応しません。
+		return false;
+	}
+
+	private void advance(long n) {
+		bytes += n;
+		if(bytes - reported >= REPORT_INTERVAL) {
+			reported = bytes;
+			progress.accept(bytes);
+		}
+	}
+
+	private void finish() {
+		if(reported != bytes) {
+			reported = bytes;
+			progress.accept(bytes);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** BufferedImage と JavaFX の WritableImage でピクセルを共有する描画用のバッファです。
+ *
+ * BufferedImage に描画した内容はコピーされることなく WritableImage に反映されます。
+ * 一度表示した後で描画し直した場合は、FXアプリケーションスレッドで {@link #update(Rectangle2D)} を呼び出して
+ * 変更された領域を通知する必要があります。
+ * プールで再利用されたバッファは、表示されないまま別の画像が描画されていることがあるため、
+ * ピクセルに書き込むと変更済みの印を付け、{@link PdfView#show} で表示するときに通知し直します。
+ *
+ * バッファは {@link RenderBufferPool} から取得され、参照カウントが 0 になるとプールに戻されて再利用されます。
+ * バッファの大きさは使用する大きさ以上に切り上げられているため、表示する際は {@link #getViewport()} を使用します。
+ */
+final class RenderBuffer {
+
+	private final RenderBufferPool pool;
+	private final BufferedImage bufferedImage;
+	private final int[] pixels;
+	private final PixelBuffer<IntBuffer> pixelBuffer;
+	private final WritableImage image;
+	private final AtomicInteger references = new AtomicInteger(1);
+	private int width;
+	private int height;
+	/** ピクセルに書き込んでから JavaFX に通知していない場合は true です。 */
+	private volatile boolean dirty = true;
+
+	RenderBuffer(RenderBufferPool pool, int capacityWidth, int capacityHeight) {
+		this.pool = pool;
+		bufferedImage = new BufferedImage(capacityWidth, capacityHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+		pixels = ((DataBufferInt)bufferedImage.getRaster().getDataBuffer()).getData();
+		pixelBuffer = new PixelBuffer<>(capacityWidth, capacityHeight, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+		image = new WritableImage(pixelBuffer);
+		width = capacityWidth;
+		height = capacityHeight;
+	}
+
+	/** プールから取り出されたときに使用する大きさを設定し、参照カウントを 1 にします。
+	 *
+	 */
+	void reset(int width, int height) {
+		this.width = width;
+		this.height = height;
+		dirty = true;
+		references.set(1);
+	}
+
+	/** 使用している幅を返します。
+	 *
+	 * @return 使用している幅（ピクセル）。
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/** 使用している高さを返します。
+	 *
+	 * @return 使用している高さ（ピクセル）。
+	 */
+	int getHeight() {
+		return height;
+	}
+
+	int getCapacityWidth() {
+		return bufferedImage.getWidth();
+	}
+
+	int getCapacityHeight() {
+		return bufferedImage.getHeight();
+	}
+
+	/** バッファが占めるメモリのバイト数を返します。
+	 *
+	 * @return バイト数。
+	 */
+	long getBytes() {
+		return (long)getCapacityWidth() * (long)getCapacityHeight() * 4L;
+	}
+
+	/** ピクセルの配列を返します。各ピクセルは乗算済みの ARGB で、1 行の長さは {@link #getCapacityWidth()} です。
+	 *
+	 * @return ピクセルの配列。
+	 */
+	int[] getPixels() {
+		dirty = true;
+		return pixels;
+	}
+
+	Graphics2D createGraphics() {
+		dirty = true;
+		Graphics2D graphics = bufferedImage.createGraphics();
+		graphics.clipRect(0, 0, width, height);
+		return graphics;
+	}
+
+	WritableImage getImage() {
+		return image;
+	}
+
+	/** 画像のうち使用している領域を返します。ImageView のビューポートに設定して使用します。
+	 *
+	 * @return 使用している領域。
+	 */
+	Rectangle2D getViewport() {
+		return new Rectangle2D(0, 0, width, height);
+	}
+
+	/** 変更された領域を JavaFX に通知します。FXアプリケーションスレッドで呼び出す必要があります。
+	 *
+	 * @param dirty 変更された領域。null の場合はバッファ全体。
+	 */
+	void update(Rectangle2D dirty) {
+		this.dirty = false;
+		pixelBuffer.updateBuffer(buffer -> dirty);
+	}
+
+	/** 通知していない変更があれば、バッファ全体が変更されたことを JavaFX に通知します。FXアプリケーションスレッドで呼び出す必要があります。
+	 *
+	 */
+	void updateIfDirty() {
+		if(dirty) {
+			update(null);
+		}
+	}
+
+	/** 参照カウントを増やします。
+	 *
+	 */
+	void retain() {
+		references.incrementAndGet();
+	}
+
+	/** 参照カウントを減らします。0 になった場合はプールに戻されます。
+	 *
+	 */
+	void release() {
+		if(references.decrementAndGet() == 0 && pool != null) {
+			pool.recycle(this);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/** 描画用のバッファを再利用するためのプールです。
+ *
+ * バッファの大きさは {@link #BUCKET_SIZE} の倍数に切り上げて管理するため、
+ * ウィンドウのサイズを変更している間も同じバッファが繰り返し使用されます。
+ * 同じ大きさのバッファは {@link #MAX_BUFFERS_PER_SIZE} 個まで保持し、
+ * 表示中のバッファと描画中のバッファを入れ替えながら使用できるようにします。
+ * スレッドセーフです。
+ */
+final class RenderBufferPool {
+
+	/** バッファの大きさを切り上げる単位（ピクセル）です。 */
+	static final int BUCKET_SIZE = 64;
+
+	/** 同じ大きさのバッファを保持する最大数です。 */
+	static final int MAX_BUFFERS_PER_SIZE = 3;
+
+	private final ArrayDeque<RenderBuffer> free = new ArrayDeque<>();
+	private final long maxBytes;
+	private long bytes;
+
+	RenderBufferPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/** 指定した大きさ以上のバッファを取得します。取得したバッファの参照カウントは 1 です。
+	 *
+	 * @param width 使用する幅（ピクセル）。
+	 * @param height 使用する高さ（ピクセル）。
+	 * @return バッファ。
+	 */
+	RenderBuffer acquire(int width, int height) {
+		int capacityWidth = roundUp(width);
+		int capacityHeight = roundUp(height);
+
+		RenderBuffer buffer = null;
+		synchronized (this) {
+			Iterator<RenderBuffer> it = free.iterator();
+			while(it.hasNext()) {
+				RenderBuffer b = it.next();
+				if(b.getCapacityWidth() == capacityWidth && b.getCapacityHeight() == capacityHeight) {
+					it.remove();
+					bytes -= b.getBytes();
+					buffer = b;
+					break;
+				}
+			}
+		}
+		if(buffer == null) {
+			buffer = new RenderBuffer(this, capacityWidth, capacityHeight);
+		}
+		buffer.reset(width, height);
+		return buffer;
+	}
+
+	/** 参照されなくなったバッファをプールに戻します。
+	 *
+	 */
+	synchronized void recycle(RenderBuffer buffer) {
+		int count = 0;
+		for(RenderBuffer b : free) {
+			if(b.getCapacityWidth() == buffer.getCapacityWidth() && b.getCapacityHeight() == buffer.getCapacityHeight()) {
+				count++;
+			}
+		}
+		if(count >= MAX_BUFFERS_PER_SIZE || buffer.getBytes() > maxBytes) {
+			return;
+		}
+		free.addFirst(buffer);
+		bytes += buffer.getBytes();
+		while(bytes > maxBytes) {
+			bytes -= free.removeLast().getBytes();
+		}
+	}
+
+	private static int roundUp(int size) {
+		return Math.max(1, (size + BUCKET_SIZE - 1) / BUCKET_SIZE) * BUCKET_SIZE;
+	}
+}
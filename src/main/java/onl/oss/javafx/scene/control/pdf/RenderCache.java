@@ -0,0 +1,207 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.awt.RenderingHints;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/** レンダリング済みのページ画像をバイト数の上限付きで保持する LRU キャッシュです。
+ *
+ * 上限を超えた場合は最も長く参照されていない画像から破棄します。
+ * キャッシュに格納したバッファは参照カウントを 1 つ保持し、破棄するときに解放します。
+ * スレッドセーフです。
+ */
+final class RenderCache {
+
+	private final LinkedHashMap<Key, RenderBuffer> map = new LinkedHashMap<>(16, 0.75f, true);
+	private long maxBytes;
+	private long bytes;
+
+	RenderCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	/** キャッシュからバッファを取得します。
+	 *
+	 * 取得したバッファは参照カウントが増やされているため、不要になったら解放する必要があります。
+	 *
+	 * @param key キー。
+	 * @return バッファ。キャッシュにない場合は null。
+	 */
+	synchronized RenderBuffer acquire(Key key) {
+		RenderBuffer buffer = map.get(key);
+		if(buffer != null) {
+			buffer.retain();
+		}
+		return buffer;
+	}
+
+	synchronized boolean contains(Key key) {
+		return map.containsKey(key);
+	}
+
+	synchronized void put(Key key, RenderBuffer buffer) {
+		long size = buffer.getBytes();
+		if(size > maxBytes) {
+			return;
+		}
+		buffer.retain();
+		RenderBuffer old = map.put(key, buffer);
+		if(old != null) {
+			bytes -= old.getBytes();
+			old.release();
+		}
+		bytes += size;
+		trim();
+	}
+
+	/** 指定したドキュメントの画像をすべて破棄します。
+	 *
+	 * @param document 破棄する画像のドキュメント。
+	 */
+	synchronized void remove(PDDocument document) {
+		Iterator<Map.Entry<Key, RenderBuffer>> it = map.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Key, RenderBuffer> entry = it.next();
+			if(entry.getKey().document == document) {
+				bytes -= entry.getValue().getBytes();
+				entry.getValue().release();
+				it.remove();
+			}
+		}
+	}
+
+	synchronized void clear() {
+		for(RenderBuffer buffer : map.values()) {
+			buffer.release();
+		}
+		map.clear();
+		bytes = 0;
+	}
+
+	private void trim() {
+		Iterator<RenderBuffer> it = map.values().iterator();
+		while(bytes > maxBytes && it.hasNext()) {
+			RenderBuffer buffer = it.next();
+			bytes -= buffer.getBytes();
+			buffer.release();
+			it.remove();
+		}
+	}
+
+	/** キャッシュのキーです。
+	 *
+	 * ドキュメントは同一性で比較します。
+	 * 幅と高さはページ全体をレンダリングしたときの大きさで、
+	 * タイルの場合はページ内の領域を合わせて保持します。
+	 */
+	static final class Key {
+		private final PDDocument document;
+		private final int pageIndex;
+		private final int width;
+		private final int height;
+		private final RenderingHints hints;
+		private final int regionX;
+		private final int regionY;
+		private final int regionWidth;
+		private final int regionHeight;
+		private final int hashCode;
+
+		Key(PDDocument document, int pageIndex, int width, int height, RenderingHints hints) {
+			this(document, pageIndex, width, height, hints, 0, 0, width, height);
+		}
+
+		Key(PDDocument document, int pageIndex, int width, int height, RenderingHints hints,
+				int regionX, int regionY, int regionWidth, int regionHeight) {
+			this.document = document;
+			this.pageIndex = pageIndex;
+			this.width = width;
+			this.height = height;
+			// RenderingHints は可変なので複製を保持します。
+			this.hints = (hints != null) ? (RenderingHints)hints.clone() : null;
+			this.regionX = regionX;
+			this.regionY = regionY;
+			this.regionWidth = regionWidth;
+			this.regionHeight = regionHeight;
+			this.hashCode = Objects.hash(System.identityHashCode(document), pageIndex, width, height, this.hints,
+					regionX, regionY, regionWidth, regionHeight);
+		}
+
+		PDDocument getDocument() {
+			return document;
+		}
+
+		int getPageIndex() {
+			return pageIndex;
+		}
+
+		int getWidth() {
+			return width;
+		}
+
+		int getHeight() {
+			return height;
+		}
+
+		RenderingHints getHints() {
+			return hints;
+		}
+
+		int getRegionX() {
+			return regionX;
+		}
+
+		int getRegionY() {
+			return regionY;
+		}
+
+		int getRegionWidth() {
+			return regionWidth;
+		}
+
+		int getRegionHeight() {
+			return regionHeight;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return document == other.document
+					&& pageIndex == other.pageIndex
+					&& width == other.width
+					&& height == other.height
+					&& Objects.equals(hints, other.hints)
+					&& regionX == other.regionX
+					&& regionY == other.regionY
+					&& regionWidth == other.regionWidth
+					&& regionHeight == other.regionHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
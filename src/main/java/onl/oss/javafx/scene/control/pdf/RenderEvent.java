@@ -0,0 +1,76 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** レンダリングの計測結果を記録する JDK Flight Recorder のイベントです。
+ *
+ */
+@Name("onl.oss.javafx.pdf.Render")
+@Label("PDF Render")
+@Category({ "fx-pdf" })
+@Description("Rendering of a PDF page by PdfView")
+final class RenderEvent extends Event {
+
+	@Label("Page Index")
+	int pageIndex;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Type")
+	String type;
+
+	@Label("Source")
+	String source;
+
+	@Label("Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueWait;
+
+	@Label("Render Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long renderTime;
+
+	@Label("Conversion Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long conversionTime;
+
+	@Label("Time to Display")
+	@Timespan(Timespan.NANOSECONDS)
+	long displayTime;
+
+	@Label("Bitmap Size")
+	@DataAmount
+	long bytes;
+
+	@Label("Coalesced Requests")
+	int coalescedRequests;
+
+	static void commit(RenderMetrics metrics) {
+		RenderEvent event = new RenderEvent();
+		if(!event.isEnabled()) {
+			return;
+		}
+		event.pageIndex = metrics.getPageIndex();
+		event.width = metrics.getWidth();
+		event.height = metrics.getHeight();
+		event.type = metrics.getType().name();
+		event.source = metrics.getSource().name();
+		event.queueWait = metrics.getQueueWaitNanos();
+		event.renderTime = metrics.getRenderNanos();
+		event.conversionTime = metrics.getConversionNanos();
+		event.displayTime = metrics.getDisplayNanos();
+		event.bytes = metrics.getBytes();
+		event.coalescedRequests = metrics.getCoalescedRequests();
+		event.commit();
+	}
+}
@@ -0,0 +1,27 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.util.EventListener;
+
+/** PdfView のレンダリングと読み込みの計測結果を受け取るリスナーです。
+ *
+ * メソッドは FXアプリケーションスレッドで呼び出されます。
+ * 同じ計測結果は JDK Flight Recorder のイベント（onl.oss.javafx.pdf.Render、onl.oss.javafx.pdf.Load）としても記録されます。
+ *
+ * @see PdfView#addRenderListener(RenderListener)
+ */
+public interface RenderListener extends EventListener {
+
+	/** ページの画像が表示されたとき、または先読みした画像がキャッシュに格納されたときに呼び出されます。
+	 *
+	 * @param metrics 計測結果。
+	 */
+	default void rendered(RenderMetrics metrics) {
+	}
+
+	/** ドキュメントを読み込んで PdfView に設定したときに呼び出されます。
+	 *
+	 * @param metrics 計測結果。
+	 */
+	default void loaded(LoadMetrics metrics) {
+	}
+}
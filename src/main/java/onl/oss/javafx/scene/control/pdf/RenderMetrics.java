@@ -0,0 +1,129 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/** 1 回のレンダリングにかかった時間などの計測結果です。
+ *
+ * {@link RenderListener} に通知されます。時間はすべてナノ秒で表します。
+ */
+public final class RenderMetrics {
+
+	/** レンダリングした画像の種類です。 */
+	public enum Type {
+		/** 表示するページ全体の画像です。 */
+		PAGE,
+		/** 段階的なレンダリングで最初に表示する低解像度の画像です。 */
+		PREVIEW,
+		/** 拡大表示しているページのタイルです。まとめてレンダリングしたタイルを 1 回として計測します。 */
+		TILES,
+		/** 先読みしたページの画像です。表示はされません。 */
+		PREFETCH
+	}
+
+	/** 画像を取得した場所です。 */
+	public enum Source {
+		/** ページをレンダリングしました。 */
+		RENDERED,
+		/** メモリ上のキャッシュにある画像を使用しました。 */
+		MEMORY_CACHE,
+		/** ディスクキャッシュにある画像を読み込みました。 */
+		DISK_CACHE
+	}
+
+	private final PDDocument document;
+	private final int pageIndex;
+	private final int width;
+	private final int height;
+	private final Type type;
+	private final Source source;
+	private final long queueWaitNanos;
+	private final long renderNanos;
+	private final long conversionNanos;
+	private final long displayNanos;
+	private final long bytes;
+	private final int coalescedRequests;
+
+	RenderMetrics(PDDocument document, int pageIndex, int width, int height, Type type, Source source,
+			long queueWaitNanos, long renderNanos, long conversionNanos, long displayNanos, long bytes, int coalescedRequests) {
+		this.document = document;
+		this.pageIndex = pageIndex;
+		this.width = width;
+		this.height = height;
+		this.type = type;
+		this.source = source;
+		this.queueWaitNanos = queueWaitNanos;
+		this.renderNanos = renderNanos;
+		this.conversionNanos = conversionNanos;
+		this.displayNanos = displayNanos;
+		this.bytes = bytes;
+		this.coalescedRequests = coalescedRequests;
+	}
+
+	public PDDocument getDocument() {
+		return document;
+	}
+
+	public int getPageIndex() {
+		return pageIndex;
+	}
+
+	/** レンダリングした画像の幅（ピクセル）を返します。 */
+	public int getWidth() {
+		return width;
+	}
+
+	/** レンダリングした画像の高さ（ピクセル）を返します。 */
+	public int getHeight() {
+		return height;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Source getSource() {
+		return source;
+	}
+
+	/** ワーカースレッドに投入されてから実行が始まるまでの時間を返します。 */
+	public long getQueueWaitNanos() {
+		return queueWaitNanos;
+	}
+
+	/** ページの解析とレンダリング（ディスクキャッシュの場合は読み込み）にかかった時間を返します。 */
+	public long getRenderNanos() {
+		return renderNanos;
+	}
+
+	/** レンダリングした画像を JavaFX に反映するのにかかった時間を返します。 */
+	public long getConversionNanos() {
+		return conversionNanos;
+	}
+
+	/** 表示を要求してから画像が表示されるまでの時間を返します。表示されない場合は -1 です。 */
+	public long getDisplayNanos() {
+		return displayNanos;
+	}
+
+	/** 画像が占めるメモリのバイト数を返します。 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/** ワーカースレッドが使用中だったためにこのレンダリングにまとめられた表示の要求の数を返します。 */
+	public int getCoalescedRequests() {
+		return coalescedRequests;
+	}
+
+	public boolean isCoalesced() {
+		return coalescedRequests > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderMetrics[pageIndex=" + pageIndex + ", size=" + width + "x" + height + ", type=" + type + ", source=" + source
+				+ ", queueWait=" + queueWaitNanos / 1000000.0 + "ms, render=" + renderNanos / 1000000.0 + "ms"
+				+ ", conversion=" + conversionNanos / 1000000.0 + "ms, display=" + displayNanos / 1000000.0 + "ms"
+				+ ", bytes=" + bytes + ", coalesced=" + coalescedRequests + "]";
+	}
+}
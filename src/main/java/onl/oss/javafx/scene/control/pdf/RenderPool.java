@@ -0,0 +1,232 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/** レンダリングを行うスレッドのプールです。
+ *
+ * PDDocument はスレッドセーフではないため、複数のスレッドでレンダリングする場合は
+ * 同じバイト列からスレッドごとに PDDocument を開き直して使用します。
+ * 開き直す方法が登録されていないドキュメントは、元の PDDocument を排他制御して使用します。
+ * スレッドは {@link RenderScheduler} が優先度に従って割り当てます。
+ * レンダリングに使用するドキュメントには {@link SharedResourceCache} を設定し、
+ * デコードした画像をすべてのスレッドで共有します。
+ */
+final class RenderPool {
+
+	private final int threads;
+	private final RenderScheduler scheduler;
+	private final Map<PDDocument, Source> sources = new HashMap<>();
+	private final DecodeCache decodeCache;
+
+	RenderPool(int threads) {
+		this.threads = Math.max(1, threads);
+		this.scheduler = new RenderScheduler(this.threads, "fx-pdf-render");
+		this.decodeCache = new DecodeCache(RenderService.DEFAULT_RESOURCE_CACHE_SIZE);
+	}
+
+	int getThreads() {
+		return threads;
+	}
+
+	boolean isParallel() {
+		return threads > 1;
+	}
+
+	RenderScheduler getScheduler() {
+		return scheduler;
+	}
+
+	DecodeCache getDecodeCache() {
+		return decodeCache;
+	}
+
+	/** ドキュメントに {@link SharedResourceCache} を設定します。
+	 *
+	 * 設定する前に読み込んだフォントは引き継がれないため、フォントを先読みする前に呼び出します。
+	 * 設定済みの場合は何もしません。
+	 *
+	 * @param document 元のドキュメント。
+	 */
+	void prepare(PDDocument document) {
+		synchronized (document) {
+			SharedResourceCache.install(decodeCache, document, document);
+		}
+	}
+
+	/** ドキュメントを開き直す方法を登録し、ドキュメントに {@link SharedResourceCache} を設定します。
+	 *
+	 * @param document 元のドキュメント。
+	 * @param opener 元のドキュメントと同じ内容の PDDocument を新たに開く処理。
+	 */
+	void register(PDDocument document, Callable<PDDocument> opener) {
+		prepare(document);
+		synchronized (this) {
+			sources.put(document, new Source(opener));
+		}
+	}
+
+	/** ドキュメントの登録を解除し、スレッドごとに開いた PDDocument を閉じます。
+	 *
+	 * 登録していないドキュメントでも、デコードした画像とフォントは破棄します。
+	 *
+	 * @param document 元のドキュメント。
+	 */
+	void unregister(PDDocument document) {
+		Source source;
+		synchronized (this) {
+			source = sources.remove(document);
+		}
+		decodeCache.remove(document);
+		if(source == null) {
+			return;
+		}
+		List<PDDocument> replicas;
+		synchronized (this) {
+			replicas = new ArrayList<>(source.replicas.values());
+			replicas.addAll(source.spares);
+		}
+		for(PDDocument replica : replicas) {
+			synchronized (replica) {
+				try {
+					replica.close();
+				} catch(IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/** 現在のスレッドで使用できる PDDocument を渡して関数を実行します。
+	 *
+	 * @param document 元のドキュメント。
+	 * @param function 実行する関数。
+	 * @return 関数の戻り値。
+	 */
+	<T> T apply(PDDocument document, Function<PDDocument, T> function) {
+		PDDocument instance = acquire(document);
+		synchronized (instance) {
+			// 読み込みを経ずに設定されたドキュメントには、ここで初めて設定します。
+			SharedResourceCache.install(decodeCache, document, instance);
+			return function.apply(instance);
+		}
+	}
+
+	/** レンダリングに使用するすべての PDDocument を返します。
+	 *
+	 * 複数のスレッドでレンダリングする場合は、スレッドごとに開き直す PDDocument をスレッドの数だけ返します。
+	 * まだ開き直していないスレッドの分はここで開き直して取っておき、そのスレッドが初めてレンダリングするときに使用します。
+	 * それ以外の場合は元のドキュメントだけを返します。
+	 * 返された PDDocument は、使用する前に排他制御する必要があります。
+	 *
+	 * @param document 元のドキュメント。
+	 * @return レンダリングに使用する PDDocument の一覧。
+	 */
+	List<PDDocument> getInstances(PDDocument document) {
+		List<PDDocument> instances = new ArrayList<>();
+		Source source;
+		int missing;
+		synchronized (this) {
+			source = isParallel() ? sources.get(document) : null;
+			if(source == null) {
+				instances.add(document);
+				return instances;
+			}
+			missing = threads - source.replicas.size() - source.spares.size();
+		}
+
+		// 開き直すには時間がかかるためロックの外で行います。
+		List<PDDocument> opened = new ArrayList<>();
+		for(int i = 0; i < missing; i++) {
+			try {
+				PDDocument replica = source.opener.call();
+				SharedResourceCache.install(decodeCache, document, replica);
+				opened.add(replica);
+			} catch(Exception e) {
+				break;
+			}
+		}
+		synchronized (this) {
+			if(sources.get(document) == source) {
+				source.spares.addAll(opened);
+				instances.addAll(source.replicas.values());
+				instances.addAll(source.spares);
+				return instances;
+			}
+		}
+		// 開き直している間に登録が解除されました。
+		for(PDDocument replica : opened) {
+			try {
+				replica.close();
+			} catch(IOException ignore) {
+			}
+		}
+		return instances;
+	}
+
+	private PDDocument acquire(PDDocument document) {
+		if(!isParallel()) {
+			return document;
+		}
+
+		Thread thread = Thread.currentThread();
+		Source source;
+		synchronized (this) {
+			source = sources.get(document);
+			if(source == null) {
+				return document;
+			}
+			PDDocument replica = source.replicas.get(thread);
+			if(replica != null) {
+				return replica;
+			}
+			// 先に開き直しておいたものがあればそれを使用します。
+			replica = source.spares.pollFirst();
+			if(replica != null) {
+				source.replicas.put(thread, replica);
+				return replica;
+			}
+		}
+
+		// 開き直すには時間がかかるためロックの外で行います。
+		PDDocument replica;
+		try {
+			replica = source.opener.call();
+		} catch(Exception e) {
+			return document;
+		}
+		// 開き直したドキュメントは、まだほかのスレッドから参照されていません。
+		SharedResourceCache.install(decodeCache, document, replica);
+		synchronized (this) {
+			if(sources.get(document) == source) {
+				source.replicas.put(thread, replica);
+				return replica;
+			}
+		}
+		// 開き直している間に登録が解除されました。
+		try {
+			replica.close();
+		} catch(IOException ignore) {
+		}
+		return document;
+	}
+
+	private static final class Source {
+		private final Callable<PDDocument> opener;
+		private final Map<Thread, PDDocument> replicas = new HashMap<>();
+		/** 開き直したものの、まだどのスレッドにも割り当てていない PDDocument です。 */
+		private final Deque<PDDocument> spares = new ArrayDeque<>();
+
+		private Source(Callable<PDDocument> opener) {
+			this.opener = opener;
+		}
+	}
+}
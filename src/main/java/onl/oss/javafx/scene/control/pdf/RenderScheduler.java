@@ -0,0 +1,246 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/** 優先度に従ってレンダリングを実行するスケジューラーです。
+ *
+ * 投入された処理は優先度の高い順に、同じ優先度では期限の早い順に、期限も同じであれば投入された順に実行されます。
+ * 同じ優先度で同じキーの処理が実行を待っている場合は新たに投入せず、待っている処理の期限を早めます。
+ * 表示中のページの処理が投入されると、実行中の優先度の低い処理は {@link #isCancelled()} が true になります。
+ * その処理が CancellationException をスローして中断した場合は、実行を待つ処理の列に戻されて、後で最初から実行し直されます。
+ * スレッドセーフです。
+ */
+final class RenderScheduler {
+
+	/** 処理の優先度です。先に宣言したものほど優先度が高くなります。 */
+	enum Priority {
+		/** 表示中のページです。 */
+		VISIBLE,
+		/** 先読みするページです。 */
+		PREFETCH,
+		/** サムネイルです。 */
+		THUMBNAIL,
+		/** 全文検索の索引の作成やバッチでのレンダリングなど、空いている時間に行う処理です。 */
+		BACKGROUND
+	}
+
+	/** 実行中の処理です。スレッドごとに保持します。 */
+	private static final ThreadLocal<Ticket> current = new ThreadLocal<>();
+
+	private final int threads;
+	private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+	/** 実行を待っている処理の優先度とキーです。 */
+	private final Map<List<Object>, Ticket> queued = new HashMap<>();
+	private final List<Ticket> running = new ArrayList<>();
+	private long sequence;
+	private boolean shutdown;
+
+	RenderScheduler(int threads, String name) {
+		this.threads = Math.max(1, threads);
+		for(int i = 0; i < this.threads; i++) {
+			Thread t = new Thread(this::work, name + "-" + i);
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	int getThreads() {
+		return threads;
+	}
+
+	/** 処理を投入します。
+	 *
+	 * @param priority 優先度。
+	 * @param deadline 結果が必要になる時刻（{@link System#nanoTime()} の値）。同じ優先度の処理の順序を決めます。
+	 * @param key 重複を取り除くためのキー。null の場合は重複を取り除きません。
+	 * @param task 処理。
+	 * @return 投入した処理。同じ優先度で同じキーの処理が実行を待っていた場合はその処理。
+	 * @throws RejectedExecutionException 停止している場合。
+	 */
+	synchronized Ticket submit(Priority priority, long deadline, Object key, Runnable task) {
+		if(shutdown) {
+			throw new RejectedExecutionException();
+		}
+		Ticket ticket = (key != null) ? queued.get(Arrays.asList(priority, key)) : null;
+		if(ticket != null && !ticket.cancelled) {
+			if(deadline - ticket.deadline < 0) {
+				queue.remove(ticket);
+				ticket.deadline = deadline;
+				queue.add(ticket);
+			}
+		} else {
+			ticket = new Ticket(priority, deadline, key, task, sequence++);
+			enqueue(ticket);
+		}
+		if(priority == Priority.VISIBLE) {
+			preempt(key);
+		}
+		return ticket;
+	}
+
+	/** 優先度を指定して処理を投入する Executor を返します。
+	 *
+	 * @param priority 優先度。
+	 * @return Executor。
+	 */
+	Executor executor(Priority priority) {
+		return task -> submit(priority, System.nanoTime(), null, task);
+	}
+
+	/** 実行中の処理が、取り消されたか優先度の高い処理のために中断を求められているかどうかを返します。
+	 *
+	 * このスケジューラーのスレッド以外から呼び出した場合は false を返します。
+	 *
+	 * @return 取り消されたか中断を求められている場合は true。
+	 */
+	static boolean isCancelled() {
+		Ticket ticket = current.get();
+		return ticket != null && (ticket.cancelled || ticket.preempted);
+	}
+
+	/** 実行を待っている処理がなくなったらスレッドを停止します。実行中の処理は最後まで実行されます。
+	 *
+	 */
+	synchronized void shutdown() {
+		shutdown = true;
+		notifyAll();
+	}
+
+	/** 表示中のページの処理を待たせないように、実行中の優先度の低い処理に中断を求めます。
+	 *
+	 * 優先度の最も低い処理から中断します。同じキーの処理は、その結果を待つ方が早いため中断しません。
+	 * スレッドが空いている場合は中断する必要はありません。
+	 */
+	private void preempt(Object key) {
+		int waiting = 0;
+		for(Ticket t : queue) {
+			if(t.priority == Priority.VISIBLE && !t.cancelled) {
+				waiting++;
+			}
+		}
+		int idle = threads - running.size();
+		List<Ticket> candidates = new ArrayList<>(running);
+		candidates.sort(Comparator.reverseOrder());
+		for(Ticket t : candidates) {
+			if(waiting <= idle) {
+				break;
+			}
+			if(t.priority == Priority.VISIBLE || t.preempted || (key != null && key.equals(t.key))) {
+				continue;
+			}
+			t.preempted = true;
+			waiting--;
+		}
+	}
+
+	private void enqueue(Ticket ticket) {
+		queue.add(ticket);
+		if(ticket.key != null) {
+			queued.put(Arrays.asList(ticket.priority, ticket.key), ticket);
+		}
+		notify();
+	}
+
+	private void work() {
+		while(true) {
+			Ticket ticket;
+			synchronized (this) {
+				while(true) {
+					ticket = queue.poll();
+					if(ticket != null) {
+						if(ticket.key != null) {
+							queued.remove(Arrays.asList(ticket.priority, ticket.key), ticket);
+						}
+						if(ticket.cancelled) {
+							continue;
+						}
+						break;
+					}
+					if(shutdown) {
+						return;
+					}
+					try {
+						wait();
+					} catch(InterruptedException ignore) {
+					}
+				}
+				ticket.preempted = false;
+				running.add(ticket);
+			}
+
+			current.set(ticket);
+			boolean interrupted = false;
+			try {
+				ticket.task.run();
+			} catch(CancellationException e) {
+				interrupted = true;
+			} catch(RuntimeException | Error e) {
+				Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException(t, e);
+			} finally {
+				current.remove();
+				synchronized (this) {
+					running.remove(ticket);
+					// 中断した処理は最初から実行し直します。
+					// 停止を求められていても、実行を待っている処理と同じく最後まで実行します。中断した処理の完了を待っている呼び出し元があるためです。
+					if(interrupted && ticket.preempted && !ticket.cancelled) {
+						Ticket other = (ticket.key != null) ? queued.get(Arrays.asList(ticket.priority, ticket.key)) : null;
+						if(other == null || other.cancelled) {
+							enqueue(ticket);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** 投入した処理です。
+	 *
+	 */
+	static final class Ticket implements Comparable<Ticket> {
+		private final Object key;
+		private final Runnable task;
+		private final long sequence;
+		private final Priority priority;
+		private long deadline;
+		private volatile boolean preempted;
+		private volatile boolean cancelled;
+
+		private Ticket(Priority priority, long deadline, Object key, Runnable task, long sequence) {
+			this.priority = priority;
+			this.deadline = deadline;
+			this.key = key;
+			this.task = task;
+			this.sequence = sequence;
+		}
+
+		/** 処理を取り消します。
+		 *
+		 * まだ実行していない処理は実行されなくなります。実行中の処理は {@link RenderScheduler#isCancelled()} で取り消されたことを確認できます。
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public int compareTo(Ticket o) {
+			int c = priority.compareTo(o.priority);
+			if(c != 0) {
+				return c;
+			}
+			if(deadline != o.deadline) {
+				return (deadline - o.deadline < 0) ? -1 : 1;
+			}
+			return Long.compare(sequence, o.sequence);
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/** 複数の {@link PdfView} で共有できるレンダリングのサービスです。
+ *
+ * レンダリングを行うスレッド、レンダリング済みの画像のキャッシュ、ページの描画命令を記録したディスプレイリストのキャッシュ、
+ * デコードした画像と解析したフォントのキャッシュ、描画用のバッファのプールを保持します。
+ * 同じ RenderService を渡して作成した PdfView は、スレッドの数とキャッシュのメモリの上限を共有します。
+ * ドキュメントの読み込みはレンダリングとは別の Executor で行います。
+ * 同じドキュメントを複数の PdfView で表示している場合は、同じページを同じ大きさで表示するための画像は 1 回だけレンダリングされ、
+ * レンダリング中の画像を別の PdfView が要求した場合はレンダリングが終わるのを待って同じ画像を使用します。
+ * 不要になったら {@link #close()} でレンダリングを行うスレッドを停止します。
+ * スレッドセーフです。
+ */
+public final class RenderService implements Closeable {
+
+	/** レンダリング済みの画像を保持するキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_CACHE_SIZE = 64L * 1024L * 1024L;
+
+	/** ページの描画命令を記録したディスプレイリストを保持するキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_DISPLAY_LIST_CACHE_SIZE = 32L * 1024L * 1024L;
+
+	/** デコードした画像と解析したフォントを保持するキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_RESOURCE_CACHE_SIZE = 64L * 1024L * 1024L;
+
+	private static final long DEFAULT_BUFFER_POOL_SIZE = 64L * 1024L * 1024L;
+
+	private final PageRenderer pageRenderer;
+	private final RenderCache renderCache;
+	private final DisplayListCache displayListCache = new DisplayListCache(DEFAULT_DISPLAY_LIST_CACHE_SIZE);
+	private final RenderBufferPool bufferPool = new RenderBufferPool(DEFAULT_BUFFER_POOL_SIZE);
+	/** レンダリング中の画像のキーと、レンダリングが終わったときに完了する Future です。 */
+	private final Map<RenderCache.Key, CompletableFuture<Void>> rendering = new ConcurrentHashMap<>();
+	/** ドキュメントごとの、そのドキュメントを表示している PdfView の数です。 */
+	private final Map<PDDocument, Integer> references = new HashMap<>();
+	private volatile Executor ioExecutor = IoExecutor.getDefault();
+	/** 既定の RenderService の場合は true です。既定の RenderService は閉じることができません。 */
+	private boolean shared;
+
+	/** 既定の RenderService を返します。
+	 *
+	 * サービスを指定せずに作成したコントロールが共有します。
+	 * 利用できるプロセッサーの数のスレッドでレンダリングし、最初に呼び出されたときに作成されます。
+	 *
+	 * @return 既定の RenderService。
+	 */
+	public static RenderService getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/** 利用できるプロセッサーの数のスレッドでレンダリングする RenderService を作成します。
+	 *
+	 */
+	public RenderService() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/** レンダリングに使用するスレッドの数を指定して RenderService を作成します。
+	 *
+	 * @param threads この RenderService を使用するすべての PdfView で共有するスレッドの数。
+	 */
+	public RenderService(int threads) {
+		this(threads, DEFAULT_CACHE_SIZE);
+	}
+
+	/** レンダリングに使用するスレッドの数とキャッシュのサイズを指定して RenderService を作成します。
+	 *
+	 * @param threads この RenderService を使用するすべての PdfView で共有するスレッドの数。
+	 * @param cacheBytes この RenderService を使用するすべての PdfView で共有するキャッシュのサイズ（バイト）。
+	 */
+	public RenderService(int threads, long cacheBytes) {
+		// サービスのスレッドは複数の PdfView で共有するため、取得した PageRenderer を閉じても停止しないようにします。
+		int n = Math.max(1, threads);
+		pageRenderer = new PageRenderer(new RenderPool(n), false, n * 2);
+		renderCache = new RenderCache(Math.max(0L, cacheBytes));
+	}
+
+	public int getThreads() {
+		return pageRenderer.getThreads();
+	}
+
+	/** レンダリング済みの画像を保持するキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * @param bytes キャッシュのサイズ（バイト）。0 を指定するとキャッシュしません。
+	 */
+	public void setCacheSize(long bytes) {
+		renderCache.setMaxBytes(Math.max(0L, bytes));
+	}
+
+	public long getCacheSize() {
+		return renderCache.getMaxBytes();
+	}
+
+	/** ページの描画命令を記録したディスプレイリストを保持するキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * 拡大や縮小で同じページを別の大きさでレンダリングし直すときは、コンテンツストリームを解析し直さずに記録した描画命令を再生します。
+	 *
+	 * @param bytes キャッシュのサイズ（バイト）。0 を指定すると描画命令を記録しません。
+	 */
+	public void setDisplayListCacheSize(long bytes) {
+		displayListCache.setMaxBytes(Math.max(0L, bytes));
+	}
+
+	public long getDisplayListCacheSize() {
+		return displayListCache.getMaxBytes();
+	}
+
+	/** デコードした画像と解析したフォントを保持するキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * 複数のページで使われるロゴなどの画像と埋め込まれたフォントを、ページごとにデコードし直さずに再利用します。
+	 * 画像はレンダリングを行うすべてのスレッドで共有します。
+	 *
+	 * @param bytes キャッシュのサイズ（バイト）。0 を指定するとキャッシュしません。
+	 */
+	public void setResourceCacheSize(long bytes) {
+		getRenderPool().getDecodeCache().setMaxBytes(Math.max(0L, bytes));
+	}
+
+	public long getResourceCacheSize() {
+		return getRenderPool().getDecodeCache().getMaxBytes();
+	}
+
+	/** デコードした画像と解析したフォントのキャッシュの統計を返します。
+	 *
+	 * @return その時点の統計。
+	 */
+	public ResourceCacheStatistics getResourceCacheStatistics() {
+		return getRenderPool().getDecodeCache().getStatistics();
+	}
+
+	/** ドキュメントの読み込みなど、入出力を待つ処理を実行する Executor を設定します。
+	 *
+	 * 既定では Java 21 以降は仮想スレッド、それより前は必要に応じて作成されるデーモンスレッドで実行します。
+	 * レンダリングは入出力を待たないため、この Executor ではなく、スレッドの数を指定したプールで行います。
+	 *
+	 * @param executor Executor。null を指定すると既定の Executor を使用します。
+	 */
+	public void setIoExecutor(Executor executor) {
+		ioExecutor = (executor != null) ? executor : IoExecutor.getDefault();
+	}
+
+	public Executor getIoExecutor() {
+		return ioExecutor;
+	}
+
+	/** このサービスのスレッドを使用してバッチでレンダリングするための PageRenderer を返します。
+	 *
+	 * 返された PageRenderer はサービスのスレッドを所有しないため、閉じても何もしません。
+	 *
+	 * @return PageRenderer。
+	 */
+	public PageRenderer getPageRenderer() {
+		return pageRenderer;
+	}
+
+	/** レンダリングを行うスレッドを停止します。実行中のレンダリングは最後まで実行されます。
+	 *
+	 * 停止した後は、このサービスを使用する PdfView と ThumbnailPane はレンダリングできません。
+	 * {@link #getDefault()} が返す既定の RenderService は、ほかのコントロールと共有しているため停止しません。
+	 */
+	@Override
+	public void close() {
+		if(shared) {
+			return;
+		}
+		getRenderPool().getScheduler().shutdown();
+	}
+
+	RenderPool getRenderPool() {
+		return pageRenderer.getRenderPool();
+	}
+
+	RenderCache getRenderCache() {
+		return renderCache;
+	}
+
+	DisplayListCache getDisplayListCache() {
+		return displayListCache;
+	}
+
+	RenderBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	/** ドキュメントを表示する PdfView の数を増やします。
+	 *
+	 */
+	synchronized void retain(PDDocument document) {
+		references.merge(document, 1, Integer::sum);
+	}
+
+	/** ドキュメントを表示する PdfView の数を減らします。どの PdfView も表示しなくなった場合はキャッシュした画像とディスプレイリスト、開き直したドキュメントを破棄します。
+	 *
+	 */
+	void release(PDDocument document) {
+		synchronized (this) {
+			Integer count = references.get(document);
+			if(count != null && count > 1) {
+				references.put(document, count - 1);
+				return;
+			}
+			references.remove(document);
+		}
+		renderCache.remove(document);
+		displayListCache.remove(document);
+		getRenderPool().unregister(document);
+	}
+
+	/** キャッシュにある画像を返すか、画像をレンダリングしてキャッシュに格納します。
+	 *
+	 * 同じキーの画像を別のスレッドがレンダリングしている場合は、それが終わるのを待ってキャッシュから取得します。
+	 * ドキュメントを排他制御している間に呼び出すと、レンダリングしているスレッドと互いに待ち合うため、呼び出してはいけません。
+	 * 返されたバッファは呼び出し元が参照を 1 つ保持しているため、不要になったら解放する必要があります。
+	 *
+	 * @param key キー。
+	 * @param cancelled 取り消されたかどうかを返す関数。
+	 * @param renderer 画像をレンダリングする処理。
+	 * @return 画像。
+	 * @throws CancellationException 取り消された場合。
+	 */
+	RenderBuffer render(RenderCache.Key key, BooleanSupplier cancelled, Supplier<RenderBuffer> renderer) {
+		while(true) {
+			RenderBuffer cached = renderCache.acquire(key);
+			if(cached != null) {
+				return cached;
+			}
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			CompletableFuture<Void> other = rendering.putIfAbsent(key, future);
+			if(other != null) {
+				try {
+					other.join();
+				} catch(CompletionException | CancellationException ignore) {
+					// レンダリングしていたスレッドで取り消された場合は、このスレッドでレンダリングし直します。
+				}
+				if(cancelled.getAsBoolean()) {
+					throw new CancellationException();
+				}
+				continue;
+			}
+			try {
+				RenderBuffer buffer = renderer.get();
+				renderCache.put(key, buffer);
+				return buffer;
+			} finally {
+				rendering.remove(key, future);
+				future.complete(null);
+			}
+		}
+	}
+
+	private static final class DefaultHolder {
+		private static final RenderService INSTANCE = createDefault();
+
+		private static RenderService createDefault() {
+			RenderService service = new RenderService();
+			service.shared = true;
+			return service;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package onl.oss.javafx.scene.control.pdf;
+
+/** デコードした画像と解析したフォントのキャッシュの統計です。
+ *
+ * {@link RenderService#getResourceCacheStatistics()} で取得します。
+ * 値は RenderService を作成してからの累計で、取得した時点のものです。
+ */
+public final class ResourceCacheStatistics {
+
+	private final long imageHits;
+	private final long imageMisses;
+	private final long fontHits;
+	private final long fontMisses;
+	private final long evictions;
+	private final long bytes;
+	private final long maxBytes;
+
+	ResourceCacheStatistics(long imageHits, long imageMisses, long fontHits, long fontMisses, long evictions, long bytes, long maxBytes) {
+		this.imageHits = imageHits;
+		this.imageMisses = imageMisses;
+		this.fontHits = fontHits;
+		this.fontMisses = fontMisses;
+		this.evictions = evictions;
+		this.bytes = bytes;
+		this.maxBytes = maxBytes;
+	}
+
+	/** キャッシュにあった画像の数を返します。 */
+	public long getImageHits() {
+		return imageHits;
+	}
+
+	/** キャッシュになかったためにデコードした画像の数を返します。 */
+	public long getImageMisses() {
+		return imageMisses;
+	}
+
+	/** キャッシュにあったフォントの数を返します。 */
+	public long getFontHits() {
+		return fontHits;
+	}
+
+	/** キャッシュになかったために解析したフォントの数を返します。 */
+	public long getFontMisses() {
+		return fontMisses;
+	}
+
+	/** 上限を超えたために破棄した画像とフォントの数を返します。 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/** キャッシュしている画像とフォントのおおよそのバイト数を返します。 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** 画像とフォントを合わせたヒット率を返します。一度も参照されていない場合は 0.0 です。 */
+	public double getHitRatio() {
+		long total = imageHits + imageMisses + fontHits + fontMisses;
+		return (total > 0) ? (double)(imageHits + fontHits) / total : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return "ResourceCacheStatistics[images=" + imageHits + "/" + (imageHits + imageMisses)
+				+ ", fonts=" + fontHits + "/" + (fontHits + fontMisses)
+				+ ", evictions=" + evictions + ", bytes=" + bytes + "/" + maxBytes + "]";
+	}
+}
@@ -0,0 +1,50 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import javafx.geometry.Rectangle2D;
+
+import java.util.Collections;
+import java.util.List;
+
+/** 全文検索で見つかった文字列の位置です。
+ *
+ * 領域はページの回転を考慮したクロップボックスの左上を原点とし、単位はポイントです。
+ * 表示する際は {@link PdfView#renderScaleProperty()} を掛けて、ページの表示位置に加えます。
+ * 行をまたいで見つかった場合は行ごとの領域を持ちます。
+ */
+public final class SearchHit {
+
+	private final int pageIndex;
+	private final int start;
+	private final List<Rectangle2D> bounds;
+
+	SearchHit(int pageIndex, int start, List<Rectangle2D> bounds) {
+		this.pageIndex = pageIndex;
+		this.start = start;
+		this.bounds = Collections.unmodifiableList(bounds);
+	}
+
+	public int getPageIndex() {
+		return pageIndex;
+	}
+
+	/** ページのテキストの中で見つかった位置を返します。同じページの中での順序の比較に使用できます。
+	 *
+	 * @return 文字の位置。
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/** 見つかった文字列の領域を返します。
+	 *
+	 * @return 行ごとの領域。
+	 */
+	public List<Rectangle2D> getBounds() {
+		return bounds;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchHit[pageIndex=" + pageIndex + ", start=" + start + ", bounds=" + bounds + "]";
+	}
+}
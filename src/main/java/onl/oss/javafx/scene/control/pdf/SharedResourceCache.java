@@ -0,0 +1,242 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.filter.DecodeOptions;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** ドキュメントに設定する ResourceCache です。
+ *
+ * フォントはページをまたいで {@link DecodeCache} に保持し、上限を超えると最も長く使われていないものから破棄します。
+ * 画像の XObject は PDFBox の既定の方法で保持したうえで、間接オブジェクトの番号を覚えておき、
+ * {@link #wrap(PDImage)} でデコードした画像を DecodeCache から取得するように置き換えます。
+ * PDDocument と同じく排他制御して使用します。
+ */
+final class SharedResourceCache extends DefaultResourceCache {
+
+	private final DecodeCache decodeCache;
+	private final PDDocument source;
+	private final PDDocument instance;
+	/** 画像の XObject のストリームと、その間接オブジェクトの番号と世代番号です。 */
+	private final Map<COSStream, long[]> imageKeys = new WeakHashMap<>();
+
+	private SharedResourceCache(DecodeCache decodeCache, PDDocument source, PDDocument instance) {
+		this.decodeCache = decodeCache;
+		this.source = source;
+		this.instance = instance;
+	}
+
+	/** ドキュメントにこの ResourceCache を設定します。
+	 *
+	 * アプリケーションが独自の ResourceCache を設定している場合は置き換えません。
+	 * 呼び出し元で instance を排他制御する必要があります。
+	 *
+	 * @param decodeCache 画像とフォントを保持するキャッシュ。
+	 * @param source 元のドキュメント。
+	 * @param instance ResourceCache を設定するドキュメント。source かその複製です。
+	 */
+	static void install(DecodeCache decodeCache, PDDocument source, PDDocument instance) {
+		ResourceCache current = instance.getResourceCache();
+		if(current == null || current.getClass() == DefaultResourceCache.class) {
+			instance.setResourceCache(new SharedResourceCache(decodeCache, source, instance));
+		}
+	}
+
+	/** 画像を、デコードした画像を DecodeCache から取得する PDImage に置き換えます。
+	 *
+	 * 間接オブジェクトの番号がわからない画像と、オプショナルコンテンツに属する画像はそのまま返します。
+	 * PDFBox はオプショナルコンテンツを PDImageXObject の場合にだけ確認するためです。
+	 *
+	 * @param image 画像。
+	 * @return 置き換えた画像。
+	 */
+	PDImage wrap(PDImage image) {
+		if(!(image instanceof PDImageXObject)) {
+			return image;
+		}
+		PDImageXObject xobject = (PDImageXObject)image;
+		long[] key = imageKeys.get(xobject.getCOSObject());
+		if(key == null || xobject.getOptionalContent() != null) {
+			return image;
+		}
+		return new CachedImage(xobject, key[0], (int)key[1]);
+	}
+
+	@Override
+	public PDFont getFont(COSObject indirect) {
+		return decodeCache.getFont(source, instance, indirect.getObjectNumber(), indirect.getGenerationNumber());
+	}
+
+	@Override
+	public void put(COSObject indirect, PDFont font) {
+		decodeCache.putFont(source, instance, indirect.getObjectNumber(), indirect.getGenerationNumber(), font);
+	}
+
+	@Override
+	public void put(COSObject indirect, PDXObject xobject) throws IOException {
+		super.put(indirect, xobject);
+		if(xobject instanceof PDImageXObject) {
+			imageKeys.put(xobject.getCOSObject(), new long[] { indirect.getObjectNumber(), indirect.getGenerationNumber() });
+		}
+	}
+
+	/** デコードした画像を DecodeCache から取得する PDImage です。それ以外は元の画像に委譲します。 */
+	private final class CachedImage implements PDImage {
+		private final PDImageXObject image;
+		private final long objectNumber;
+		private final int generation;
+
+		private CachedImage(PDImageXObject image, long objectNumber, int generation) {
+			this.image = image;
+			this.objectNumber = objectNumber;
+			this.generation = generation;
+		}
+
+		@Override
+		public BufferedImage getImage() throws IOException {
+			return decodeCache.getImage(source, objectNumber, generation, 1, image::getImage);
+		}
+
+		@Override
+		public BufferedImage getImage(Rectangle region, int subsampling) throws IOException {
+			if(region != null) {
+				return image.getImage(region, subsampling);
+			}
+			return decodeCache.getImage(source, objectNumber, generation, subsampling, () -> image.getImage(null, subsampling));
+		}
+
+		@Override
+		public WritableRaster getRawRaster() throws IOException {
+			return image.getRawRaster();
+		}
+
+		@Override
+		public BufferedImage getRawImage() throws IOException {
+			return image.getRawImage();
+		}
+
+		@Override
+		public BufferedImage getStencilImage(Paint paint) throws IOException {
+			return image.getStencilImage(paint);
+		}
+
+		@Override
+		public InputStream createInputStream() throws IOException {
+			return image.createInputStream();
+		}
+
+		@Override
+		public InputStream createInputStream(List<String> stopFilters) throws IOException {
+			return image.createInputStream(stopFilters);
+		}
+
+		@Override
+		public InputStream createInputStream(DecodeOptions options) throws IOException {
+			return image.createInputStream(options);
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return image.isEmpty();
+		}
+
+		@Override
+		public boolean isStencil() {
+			return image.isStencil();
+		}
+
+		@Override
+		public void setStencil(boolean isStencil) {
+			image.setStencil(isStencil);
+		}
+
+		@Override
+		public int getBitsPerComponent() {
+			return image.getBitsPerComponent();
+		}
+
+		@Override
+		public void setBitsPerComponent(int bitsPerComponent) {
+			image.setBitsPerComponent(bitsPerComponent);
+		}
+
+		@Override
+		public PDColorSpace getColorSpace() throws IOException {
+			return image.getColorSpace();
+		}
+
+		@Override
+		public void setColorSpace(PDColorSpace colorSpace) {
+			image.setColorSpace(colorSpace);
+		}
+
+		@Override
+		public int getHeight() {
+			return image.getHeight();
+		}
+
+		@Override
+		public void setHeight(int height) {
+			image.setHeight(height);
+		}
+
+		@Override
+		public int getWidth() {
+			return image.getWidth();
+		}
+
+		@Override
+		public void setWidth(int width) {
+			image.setWidth(width);
+		}
+
+		@Override
+		public void setDecode(COSArray decode) {
+			image.setDecode(decode);
+		}
+
+		@Override
+		public COSArray getDecode() {
+			return image.getDecode();
+		}
+
+		@Override
+		public boolean getInterpolate() {
+			return image.getInterpolate();
+		}
+
+		@Override
+		public void setInterpolate(boolean value) {
+			image.setInterpolate(value);
+		}
+
+		@Override
+		public String getSuffix() {
+			return image.getSuffix();
+		}
+
+		@Override
+		public COSBase getCOSObject() {
+			return image.getCOSObject();
+		}
+	}
+}
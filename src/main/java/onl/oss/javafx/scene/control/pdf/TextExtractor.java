@@ -0,0 +1,142 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/** ページのテキストを文字ごとの位置とともに取り出します。
+ *
+ * PDFTextStripper.writeText はドキュメントのすべてのページをたどるため、1 ページずつ取り出すと
+ * ページ数の 2 乗に比例する時間がかかります。そこで processPage を直接呼び出して 1 ページだけを処理します。
+ * 呼び出し元で PDDocument を排他制御する必要があります。
+ */
+final class TextExtractor extends PDFTextStripper {
+
+	private final StringBuilder text = new StringBuilder();
+	private float[] lefts = new float[1024];
+	private float[] rights = new float[1024];
+	private int[] runStarts = new int[64];
+	private float[] runTops = new float[64];
+	private float[] runBottoms = new float[64];
+	private int runs;
+
+	TextExtractor(PDDocument document) throws IOException {
+		this.document = document;
+		this.output = Writer.nullWriter();
+		// 現在のページ番号は processPages の中でしか更新されないため、開始ページを 0 にして processPage を呼び出したページをすべて処理します。
+		setStartPage(0);
+	}
+
+	/** ページのテキストを取り出します。
+	 *
+	 * @param page ページ。
+	 * @return ページのテキスト。
+	 * @throws IOException ページを読み込めなかった場合。
+	 */
+	TextIndex.PageText extract(PDPage page) throws IOException {
+		text.setLength(0);
+		runs = 0;
+		int rotation = ((page.getRotation() % 360) + 360) % 360;
+		if(page.hasContents()) {
+			if(rotation == 0) {
+				processPage(page);
+			} else {
+				// 回転したページでは PDFTextStripper が単語や行を正しく区切れないため、回転していないページとして取り出します。
+				// 元のページを変更しないように、ページの辞書の複製から回転を取り除きます。
+				COSDictionary copy = new COSDictionary(page.getCOSObject());
+				copy.setInt(COSName.ROTATE, 0);
+				processPage(new PDPage(copy));
+			}
+		}
+		int length = text.length();
+		PDRectangle cropBox = page.getCropBox();
+		return new TextIndex.PageText(text.toString(),
+				Arrays.copyOf(lefts, length), Arrays.copyOf(rights, length),
+				Arrays.copyOf(runStarts, runs), Arrays.copyOf(runTops, runs), Arrays.copyOf(runBottoms, runs),
+				rotation, cropBox.getWidth(), cropBox.getHeight());
+	}
+
+	@Override
+	protected void writeString(String string, List<TextPosition> textPositions) {
+		if(textPositions.isEmpty()) {
+			return;
+		}
+		float top = Float.MAX_VALUE;
+		float bottom = -Float.MAX_VALUE;
+		for(TextPosition position : textPositions) {
+			top = Math.min(top, position.getY() - position.getHeightDir());
+			bottom = Math.max(bottom, position.getY());
+		}
+		addRun(top, bottom);
+
+		for(TextPosition position : textPositions) {
+			String unicode = position.getUnicode();
+			if(unicode == null || unicode.isEmpty()) {
+				continue;
+			}
+			// 合字など 1 つのグリフが複数の文字を表す場合は、グリフの幅を文字で分割します。
+			float left = position.getX();
+			float width = position.getWidth() / unicode.length();
+			for(int i = 0; i < unicode.length(); i++) {
+				char c = unicode.charAt(i);
+				if(Character.isWhitespace(c)) {
+					appendSpace();
+				} else {
+					append(TextIndex.normalize(c), left + width * i, left + width * (i + 1));
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void writeWordSeparator() {
+		appendSpace();
+	}
+
+	@Override
+	protected void writeLineSeparator() {
+		appendSpace();
+	}
+
+	/** 単語や行の区切りを空白 1 文字として追加します。空白は位置を持ちません。
+	 *
+	 */
+	private void appendSpace() {
+		int length = text.length();
+		if(length > 0 && text.charAt(length - 1) != ' ') {
+			append(' ', Float.NaN, Float.NaN);
+		}
+	}
+
+	private void append(char c, float left, float right) {
+		int index = text.length();
+		if(index == lefts.length) {
+			lefts = Arrays.copyOf(lefts, index * 2);
+			rights = Arrays.copyOf(rights, index * 2);
+		}
+		text.append(c);
+		lefts[index] = left;
+		rights[index] = right;
+	}
+
+	private void addRun(float top, float bottom) {
+		if(runs == runStarts.length) {
+			runStarts = Arrays.copyOf(runStarts, runs * 2);
+			runTops = Arrays.copyOf(runTops, runs * 2);
+			runBottoms = Arrays.copyOf(runBottoms, runs * 2);
+		}
+		runStarts[runs] = text.length();
+		runTops[runs] = top;
+		runBottoms[runs] = bottom;
+		runs++;
+	}
+}
@@ -0,0 +1,371 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import javafx.geometry.Rectangle2D;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/** ドキュメントの全文検索に使用する索引です。
+ *
+ * ページごとに取り出したテキストと文字の位置を保持し、連続する 2 文字からそれを含むページを引く転置索引を作成します。
+ * 検索では検索語のすべての 2 文字を含むページだけを調べるため、テキストを取り出し直すことはありません。
+ * 単語の区切りに依存しないため、空白で区切られない日本語の文章も検索できます。
+ * ページは先頭から順に追加され、追加されたページから検索の対象になります。
+ * スレッドセーフです。
+ */
+final class TextIndex {
+
+	private final PDDocument document;
+	private PageText[] pages;
+	/** 連続する 2 文字と、それを含むページ番号の昇順の一覧です。 */
+	private final Map<Integer, Postings> postings = new HashMap<>();
+	private int indexedPages;
+
+	TextIndex(PDDocument document, int pageCount) {
+		this.document = document;
+		this.pages = new PageText[pageCount];
+	}
+
+	/** ドキュメントのすべてのページのテキストをバックグラウンドで取り出して索引を作成します。
+	 *
+	 * ページは 1 ページずつ PDDocument を排他制御して処理するため、表示中のページのレンダリングを長く待たせることはありません。
+	 * 1 ページごとに Executor に投入し直すため、優先度に従って実行する Executor では、その間に優先度の高い処理が実行されます。
+	 * 返された索引は作成の途中でも検索でき、その時点までに追加されたページが検索の対象になります。
+	 * ページ数も最初の処理で PDDocument を排他制御して取得するため、呼び出したスレッドで PDDocument を排他制御することはありません。
+	 * FXアプリケーションスレッドから呼び出しても、レンダリング中のページを待つことはありません。
+	 *
+	 * @param document ドキュメント。
+	 * @param executor ページを処理する Executor。
+	 * @param progress ページを追加するたびに、追加したページの数とページ数を渡して呼び出される処理。
+	 * @param cancelled 索引の作成を中止するかどうかを返す関数。
+	 * @return 作成中の索引。
+	 */
+	static TextIndex buildInBackground(PDDocument document, Executor executor, BiConsumer<Integer, Integer> progress, BooleanSupplier cancelled) {
+		// ページ数は最初の処理で設定します。
+		TextIndex index = new TextIndex(document, 0);
+		executor.execute(new Builder(index, executor, progress, cancelled));
+		return index;
+	}
+
+	/** 1 ページずつテキストを取り出して索引に追加する処理です。
+	 *
+	 */
+	private static final class Builder implements Runnable {
+		private final TextIndex index;
+		private final Executor executor;
+		private final BiConsumer<Integer, Integer> progress;
+		private final BooleanSupplier cancelled;
+		private TextExtractor extractor;
+		/** ページ数です。最初の処理で取得するまでは -1 です。 */
+		private int pageCount = -1;
+		private int pageIndex;
+
+		private Builder(TextIndex index, Executor executor, BiConsumer<Integer, Integer> progress, BooleanSupplier cancelled) {
+			this.index = index;
+			this.executor = executor;
+			this.progress = progress;
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		public void run() {
+			PDDocument document = index.document;
+			PageText page;
+			synchronized (document) {
+				if(cancelled.getAsBoolean() || document.getDocument().isClosed()) {
+					return;
+				}
+				if(pageCount < 0) {
+					pageCount = document.getNumberOfPages();
+					index.setPageCount(pageCount);
+					if(pageCount == 0) {
+						return;
+					}
+				}
+				try {
+					if(extractor == null) {
+						extractor = new TextExtractor(document);
+					}
+					page = extractor.extract(document.getPage(pageIndex));
+				} catch(IOException | RuntimeException e) {
+					// テキストを取り出せないページは検索の対象から外します。
+					page = PageText.EMPTY;
+				}
+			}
+			index.add(pageIndex, page);
+			pageIndex++;
+			progress.accept(pageIndex, pageCount);
+			if(pageIndex < pageCount) {
+				executor.execute(this);
+			}
+		}
+	}
+
+	PDDocument getDocument() {
+		return document;
+	}
+
+	synchronized int getPageCount() {
+		return pages.length;
+	}
+
+	private synchronized void setPageCount(int pageCount) {
+		pages = new PageText[pageCount];
+	}
+
+	synchronized int getIndexedPages() {
+		return indexedPages;
+	}
+
+	/** ページを索引に追加します。ページは先頭から順に追加する必要があります。
+	 *
+	 * @param pageIndex ページ番号。
+	 * @param page ページのテキスト。
+	 */
+	synchronized void add(int pageIndex, PageText page) {
+		pages[pageIndex] = page;
+		indexedPages = pageIndex + 1;
+		String text = page.text;
+		for(int i = 0; i + 1 < text.length(); i++) {
+			postings.computeIfAbsent(bigram(text.charAt(i), text.charAt(i + 1)), k -> new Postings()).add(pageIndex);
+		}
+	}
+
+	/** 文字列を検索します。
+	 *
+	 * 大文字と小文字は区別しません。連続する空白は 1 つの空白として扱い、行の区切りにも一致します。
+	 *
+	 * @param query 検索する文字列。
+	 * @return 見つかった位置。ページ順、ページの中ではテキストの順に並びます。
+	 */
+	synchronized List<SearchHit> search(String query) {
+		String q = normalize(query);
+		List<SearchHit> hits = new ArrayList<>();
+		if(q.isEmpty()) {
+			return hits;
+		}
+
+		int[] candidates = findCandidates(q);
+		for(int pageIndex : candidates) {
+			PageText page = pages[pageIndex];
+			int from = 0;
+			int start;
+			while((start = page.text.indexOf(q, from)) >= 0) {
+				hits.add(new SearchHit(pageIndex, start, page.getBounds(start, start + q.length())));
+				from = start + q.length();
+			}
+		}
+		return hits;
+	}
+
+	/** 検索語のすべての 2 文字を含むページを返します。
+	 *
+	 */
+	int[] findCandidates(String q) {
+		if(q.length() < 2) {
+			int[] all = new int[indexedPages];
+			for(int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		List<Postings> lists = new ArrayList<>();
+		for(int i = 0; i + 1 < q.length(); i++) {
+			Postings p = postings.get(bigram(q.charAt(i), q.charAt(i + 1)));
+			if(p == null) {
+				return new int[0];
+			}
+			lists.add(p);
+		}
+		// 最も短い一覧から絞り込みます。
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+		int[] result = Arrays.copyOf(lists.get(0).pages, lists.get(0).size);
+		int size = result.length;
+		for(int i = 1; i < lists.size() && size > 0; i++) {
+			Postings p = lists.get(i);
+			int n = 0;
+			int j = 0;
+			for(int k = 0; k < size; k++) {
+				int page = result[k];
+				while(j < p.size && p.pages[j] < page) {
+					j++;
+				}
+				if(j < p.size && p.pages[j] == page) {
+					result[n++] = page;
+				}
+			}
+			size = n;
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/** 検索語を索引と同じ形に変換します。
+	 *
+	 */
+	static String normalize(String query) {
+		StringBuilder sb = new StringBuilder(query.length());
+		for(int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if(Character.isWhitespace(c)) {
+				if(sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+					sb.append(' ');
+				}
+			} else {
+				sb.append(normalize(c));
+			}
+		}
+		int length = sb.length();
+		if(length > 0 && sb.charAt(length - 1) == ' ') {
+			sb.setLength(length - 1);
+		}
+		return sb.toString();
+	}
+
+	/** 大文字と小文字を区別しないように文字を変換します。文字の位置がずれないように 1 文字ずつ変換します。
+	 *
+	 */
+	static char normalize(char c) {
+		return Character.toLowerCase(c);
+	}
+
+	private static Integer bigram(char c1, char c2) {
+		return (c1 << 16) | c2;
+	}
+
+	/** 連続する 2 文字を含むページ番号の一覧です。 */
+	private static final class Postings {
+		private int[] pages = new int[4];
+		private int size;
+
+		private void add(int pageIndex) {
+			if(size > 0 && pages[size - 1] == pageIndex) {
+				return;
+			}
+			if(size == pages.length) {
+				pages = Arrays.copyOf(pages, size * 2);
+			}
+			pages[size++] = pageIndex;
+		}
+	}
+
+	/** 1 ページのテキストと文字の位置です。
+	 *
+	 * テキストは {@link #normalize(char)} で変換され、単語と行の区切りは空白 1 文字になっています。
+	 * メモリを節約するため、文字ごとには左右の座標だけを保持し、上下の座標は同じ行の連続する文字の並び（ラン）ごとに保持します。
+	 * 座標は回転する前のクロップボックスの左上を原点とするポイントで、領域を返すときにページの回転を適用します。空白の座標は NaN です。
+	 */
+	static final class PageText {
+		static final PageText EMPTY = new PageText("", new float[0], new float[0], new int[0], new float[0], new float[0], 0, 0.0f, 0.0f);
+
+		private final String text;
+		private final float[] lefts;
+		private final float[] rights;
+		private final int[] runStarts;
+		private final float[] runTops;
+		private final float[] runBottoms;
+		private final int rotation;
+		private final float width;
+		private final float height;
+
+		PageText(String text, float[] lefts, float[] rights, int[] runStarts, float[] runTops, float[] runBottoms,
+				int rotation, float width, float height) {
+			this.text = text;
+			this.lefts = lefts;
+			this.rights = rights;
+			this.runStarts = runStarts;
+			this.runTops = runTops;
+			this.runBottoms = runBottoms;
+			this.rotation = rotation;
+			this.width = width;
+			this.height = height;
+		}
+
+		String getText() {
+			return text;
+		}
+
+		/** 指定した範囲の文字の領域を、行ごとにまとめて返します。
+		 *
+		 */
+		List<Rectangle2D> getBounds(int start, int end) {
+			List<Rectangle2D> bounds = new ArrayList<>();
+			double minX = 0.0;
+			double maxX = 0.0;
+			double minY = 0.0;
+			double maxY = 0.0;
+			boolean open = false;
+			for(int i = start; i < end; i++) {
+				if(Float.isNaN(lefts[i])) {
+					continue;
+				}
+				int run = findRun(i);
+				if(run < 0) {
+					continue;
+				}
+				double top = runTops[run];
+				double bottom = runBottoms[run];
+				double left = Math.min(lefts[i], rights[i]);
+				double right = Math.max(lefts[i], rights[i]);
+				// 縦方向に重ならない文字は別の行として扱います。
+				if(open && (top >= maxY || bottom <= minY)) {
+					bounds.add(rotate(minX, minY, maxX, maxY));
+					open = false;
+				}
+				if(open) {
+					minX = Math.min(minX, left);
+					maxX = Math.max(maxX, right);
+					minY = Math.min(minY, top);
+					maxY = Math.max(maxY, bottom);
+				} else {
+					minX = left;
+					maxX = right;
+					minY = top;
+					maxY = bottom;
+					open = true;
+				}
+			}
+			if(open) {
+				bounds.add(rotate(minX, minY, maxX, maxY));
+			}
+			return bounds;
+		}
+
+		/** 回転する前の領域を、ページを時計回りに回転して表示したときの領域に変換します。
+		 *
+		 */
+		private Rectangle2D rotate(double minX, double minY, double maxX, double maxY) {
+			switch(rotation) {
+			case 90:
+				return new Rectangle2D(height - maxY, minX, maxY - minY, maxX - minX);
+			case 180:
+				return new Rectangle2D(width - maxX, height - maxY, maxX - minX, maxY - minY);
+			case 270:
+				return new Rectangle2D(minY, width - maxX, maxY - minY, maxX - minX);
+			default:
+				return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+			}
+		}
+
+		private int findRun(int index) {
+			int i = Arrays.binarySearch(runStarts, index);
+			if(i < 0) {
+				i = -i - 2;
+			} else {
+				// 文字を含まないランが同じ位置から始まっている場合は最後のランを使用します。
+				while(i + 1 < runStarts.length && runStarts[i + 1] == index) {
+					i++;
+				}
+			}
+			return i;
+		}
+	}
+}
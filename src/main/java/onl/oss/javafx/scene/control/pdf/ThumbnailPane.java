@@ -0,0 +1,527 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.css.PseudoClass;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Orientation;
+import javafx.scene.Group;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Window;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+
+/** ページのサムネイルを縦に並べて表示するコントロールです。
+ *
+ * 表示範囲に含まれるサムネイルだけを作成し、スクロールして表示範囲から外れたサムネイルは再利用するため、
+ * ページ数が多いドキュメントでもメモリの使用量は表示範囲の大きさに収まります。
+ * サムネイルはバックグラウンドのスレッドで低解像度でまとめてレンダリングされます。
+ * PdfView と同じ {@link RenderService} を指定すると、サムネイルは PdfView の表示中のページと先読みより低い優先度でレンダリングされます。
+ * サムネイルも PdfView と同じくサービスのスレッドごとに開き直したドキュメントでレンダリングされるため、
+ * PdfView のレンダリングとドキュメントの排他制御で待ち合うことはありません。
+ * {@link #setDiskCacheDirectory(File)} でディレクトリを設定すると、作成したサムネイルをディスクに保存し、
+ * 同じ内容の PDF を再び開いたときはレンダリングせずに保存したサムネイルを表示します。
+ * サムネイルをクリックすると、そのページが選択されます。
+ *
+ * <pre>{@code
+ * thumbnailPane.documentProperty().bind(pdfView.documentProperty());
+ * thumbnailPane.pageIndexProperty().bindBidirectional(pdfView.pageIndexProperty());
+ * }</pre>
+ */
+public final class ThumbnailPane extends Region {
+
+	public final ObjectProperty<PDDocument> documentProperty() {
+		if (document == null) {
+			document = new SimpleObjectProperty<>(this, "document");
+		}
+		return document;
+	}
+
+	private ObjectProperty<PDDocument> document;
+
+	public final PDDocument getDocument() {
+		return documentProperty().get();
+	}
+
+	public final void setDocument(PDDocument value) {
+		documentProperty().set(value);
+	}
+
+	public final IntegerProperty pageIndexProperty() {
+		if (pageIndex == null) {
+			pageIndex = new SimpleIntegerProperty(this, "pageIndex");
+		}
+		return pageIndex;
+	}
+
+	private IntegerProperty pageIndex;
+
+	public final int getPageIndex() {
+		return pageIndexProperty().get();
+	}
+
+	public final void setPageIndex(int value) {
+		pageIndexProperty().set(value);
+	}
+
+	/** サムネイルの既定の大きさです。 */
+	public static final double DEFAULT_THUMBNAIL_SIZE = 120.0;
+
+	/** ページ番号を表示する領域の高さです。 */
+	private static final double LABEL_HEIGHT = 20.0;
+
+	/** サムネイルの周囲の余白です。 */
+	private static final double PADDING = 8.0;
+
+	/** 一度に FXアプリケーションスレッドに渡すサムネイルの数です。 */
+	private static final int BATCH_SIZE = 8;
+
+	/** スクロールして戻ったときに再レンダリングしないように保持するサムネイルの合計サイズ（バイト）です。 */
+	private static final long CACHE_SIZE = 16L * 1024L * 1024L;
+
+	/** ディスクキャッシュの既定のサイズ（バイト）です。 */
+	public static final long DEFAULT_DISK_CACHE_SIZE = 64L * 1024L * 1024L;
+
+	private static final PseudoClass SELECTED = PseudoClass.getPseudoClass("selected");
+
+	private final RenderCache cache = new RenderCache(CACHE_SIZE);
+	private final RenderBufferPool bufferPool = new RenderBufferPool(CACHE_SIZE);
+	private final RenderService service;
+	private final RenderPool renderPool;
+	private final RenderScheduler scheduler;
+
+	private final Group cellLayer = new Group();
+	private final ScrollBar scrollBar = new ScrollBar();
+
+	/** 表示中のセルです。キーはページ番号です。FXアプリケーションスレッドからのみアクセスします。 */
+	private final Map<Integer, Cell> cells = new HashMap<>();
+	private final ArrayDeque<Cell> freeCells = new ArrayDeque<>();
+
+	private double thumbnailSize = DEFAULT_THUMBNAIL_SIZE;
+
+	/** 表示中のドキュメントのページ数です。入出力用のスレッドで取得し、それまでは 0 です。FXアプリケーションスレッドからのみアクセスします。 */
+	private int pageCount;
+	private volatile DiskCache diskCache;
+	private long diskCacheSize = DEFAULT_DISK_CACHE_SIZE;
+
+	/** 表示範囲が変わるたびに更新され、それより前に要求されたレンダリングを取り消します。 */
+	private volatile long renderGeneration;
+
+	/** 最後にレンダリングを要求したサムネイルです。FXアプリケーションスレッドからのみアクセスします。 */
+	private List<RenderCache.Key> requested = new ArrayList<>();
+
+	/** 既定の {@link RenderService} を使用して ThumbnailPane を作成します。
+	 *
+	 * @see RenderService#getDefault()
+	 */
+	public ThumbnailPane() {
+		this(RenderService.getDefault());
+	}
+
+	/** レンダリングのサービスを指定して ThumbnailPane を作成します。
+	 *
+	 * サムネイルはサービスのスレッドで、表示中のページと先読みが終わってからレンダリングされます。
+	 * ドキュメントを表示している間は、ドキュメントを表示している PdfView と同じくサービスに登録します。
+	 * サムネイルのキャッシュはサービスのキャッシュとは別に保持します。
+	 *
+	 * @param service レンダリングのサービス。
+	 */
+	public ThumbnailPane(RenderService service) {
+		getStylesheets().add(ThumbnailPane.class.getResource("ThumbnailPane.css").toExternalForm());
+		getStyleClass().add("thumbnail-pane");
+
+		this.service = Objects.requireNonNull(service);
+		renderPool = service.getRenderPool();
+		scheduler = renderPool.getScheduler();
+
+		Rectangle clip = new Rectangle();
+		clip.widthProperty().bind(widthProperty());
+		clip.heightProperty().bind(heightProperty());
+		setClip(clip);
+
+		cellLayer.setAutoSizeChildren(false);
+		scrollBar.setOrientation(Orientation.VERTICAL);
+		getChildren().addAll(cellLayer, scrollBar);
+
+		documentProperty().addListener((observable, oldValue, newValue) -> {
+			for(Cell cell : cells.values()) {
+				recycle(cell);
+			}
+			cells.clear();
+			if (oldValue != null) {
+				cache.remove(oldValue);
+				service.release(oldValue);
+			}
+			pageCount = 0;
+			if (newValue != null) {
+				service.retain(newValue);
+				requestPageCount(newValue);
+			}
+			scrollBar.setValue(0.0);
+			requestLayout();
+		});
+		pageIndexProperty().addListener((observable, oldValue, newValue) -> {
+			Cell oldCell = cells.get(oldValue.intValue());
+			if (oldCell != null) {
+				oldCell.pseudoClassStateChanged(SELECTED, false);
+			}
+			Cell newCell = cells.get(newValue.intValue());
+			if (newCell != null) {
+				newCell.pseudoClassStateChanged(SELECTED, true);
+			}
+			scrollTo(newValue.intValue());
+		});
+		scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+			requestLayout();
+		});
+
+		addEventHandler(ScrollEvent.SCROLL, event -> {
+			scrollBar.setValue(Math.max(scrollBar.getMin(), Math.min(scrollBar.getMax(), scrollBar.getValue() - event.getDeltaY())));
+			event.consume();
+		});
+	}
+
+	/** サムネイルの大きさを設定します。サムネイルはこの大きさの正方形に収まるように表示されます。
+	 *
+	 * @param size サムネイルの大きさ。
+	 */
+	public void setThumbnailSize(double size) {
+		thumbnailSize = Math.max(1.0, size);
+		for(Cell cell : cells.values()) {
+			recycle(cell);
+		}
+		cells.clear();
+		requestLayout();
+	}
+
+	public double getThumbnailSize() {
+		return thumbnailSize;
+	}
+
+	/** 作成したサムネイルをディスクに保存するディレクトリを設定します。
+	 *
+	 * 設定すると、File またはバイト列から PdfView で読み込んだドキュメントのサムネイルが PDF の内容のハッシュ値をキーとして保存され、
+	 * 同じ内容の PDF を再び開いたときはレンダリングせずに保存したサムネイルを表示します。
+	 * サムネイルはページ画像とは別のファイル名で保存されるため、PdfView のディスクキャッシュと同じディレクトリも指定できますが、
+	 * 合計サイズはそれぞれで管理されるため、別のディレクトリを指定することを推奨します。
+	 * ドキュメントを読み込む前に設定する必要があります。
+	 *
+	 * @param directory サムネイルを保存するディレクトリ。null の場合はディスクキャッシュを使用しません。
+	 * @see PdfView#setDiskCacheDirectory(File)
+	 */
+	public void setDiskCacheDirectory(File directory) {
+		diskCache = (directory != null) ? new DiskCache(directory, diskCacheSize, task -> service.getIoExecutor().execute(task)) : null;
+	}
+
+	public File getDiskCacheDirectory() {
+		DiskCache disk = diskCache;
+		return (disk != null) ? disk.getDirectory() : null;
+	}
+
+	/** ディスクキャッシュのサイズ（バイト）を設定します。
+	 *
+	 * 合計サイズが超えた場合は最も長く参照されていないサムネイルから削除します。
+	 *
+	 * @param bytes ディスクキャッシュのサイズ（バイト）。
+	 */
+	public void setDiskCacheSize(long bytes) {
+		diskCacheSize = Math.max(0L, bytes);
+		DiskCache disk = diskCache;
+		if (disk != null) {
+			disk.setMaxBytes(diskCacheSize);
+		}
+	}
+
+	public long getDiskCacheSize() {
+		return diskCacheSize;
+	}
+
+	/** 指定したページのサムネイルが表示されるようにスクロールします。
+	 *
+	 * @param pageIndex ページ番号。
+	 */
+	public void scrollTo(int pageIndex) {
+		double cellHeight = getCellHeight();
+		double top = pageIndex * cellHeight;
+		double bottom = top + cellHeight;
+		double value = scrollBar.getValue();
+		if (top < value) {
+			scrollBar.setValue(top);
+		} else if (bottom > value + getHeight()) {
+			scrollBar.setValue(Math.min(scrollBar.getMax(), bottom - getHeight()));
+		}
+	}
+
+	/** ドキュメントのページ数を入出力用のスレッドで取得し、取得したらレイアウトし直します。
+	 *
+	 * ページ数の取得には PDDocument の排他制御が必要なため、FXアプリケーションスレッドがレンダリングを待たないようにします。
+	 */
+	private void requestPageCount(PDDocument document) {
+		service.getIoExecutor().execute(() -> {
+			int count;
+			synchronized (document) {
+				count = document.getDocument().isClosed() ? 0 : document.getNumberOfPages();
+			}
+			Platform.runLater(() -> {
+				if (document == getDocument()) {
+					pageCount = count;
+					requestLayout();
+				}
+			});
+		});
+	}
+
+	private double getCellHeight() {
+		return thumbnailSize + LABEL_HEIGHT + PADDING * 2;
+	}
+
+	@Override
+	protected void layoutChildren() {
+		double width = getWidth();
+		double height = getHeight();
+		double scrollBarWidth = scrollBar.prefWidth(-1);
+		scrollBar.resizeRelocate(width - scrollBarWidth, 0.0, scrollBarWidth, height);
+
+		PDDocument document = getDocument();
+		int count = (document != null) ? pageCount : 0;
+		double cellHeight = getCellHeight();
+		double contentHeight = count * cellHeight;
+		scrollBar.setMax(Math.max(0.0, contentHeight - height));
+		scrollBar.setVisibleAmount(height);
+		scrollBar.setVisible(contentHeight > height);
+		if (scrollBar.getValue() > scrollBar.getMax()) {
+			scrollBar.setValue(scrollBar.getMax());
+		}
+		double offset = scrollBar.getValue();
+
+		int first = (int)Math.floor(offset / cellHeight);
+		int last = Math.min(count - 1, (int)Math.floor((offset + height) / cellHeight));
+
+		// 表示範囲から外れたセルを再利用できるようにします。
+		Iterator<Map.Entry<Integer, Cell>> it = cells.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Integer, Cell> entry = it.next();
+			if (entry.getKey() < first || entry.getKey() > last) {
+				recycle(entry.getValue());
+				it.remove();
+			}
+		}
+
+		double outputScale = getOutputScale();
+		int size = (int)Math.ceil(thumbnailSize * outputScale);
+		List<RenderCache.Key> missing = new ArrayList<>();
+		for(int i = first; i <= last; i++) {
+			Cell cell = cells.get(i);
+			if (cell == null) {
+				cell = freeCells.pollFirst();
+				if (cell == null) {
+					cell = new Cell();
+				}
+				cell.setPage(i);
+				cell.pseudoClassStateChanged(SELECTED, i == getPageIndex());
+				cells.put(i, cell);
+				cellLayer.getChildren().add(cell);
+			}
+			cell.resizeRelocate(0.0, i * cellHeight - offset, width - (scrollBar.isVisible() ? scrollBarWidth : 0.0), cellHeight);
+			if (cell.view.getUserData() == null) {
+				// サムネイルの大きさはページの縦横比によらず枠の大きさで識別するため、表示するときにページを参照する必要はありません。
+				RenderCache.Key key = new RenderCache.Key(document, i, size, size, null);
+				RenderBuffer buffer = cache.acquire(key);
+				if (buffer != null) {
+					PdfView.show(cell.view, buffer);
+				} else {
+					missing.add(key);
+				}
+			}
+		}
+		render(missing);
+	}
+
+	/** サムネイルをまとめてレンダリングします。
+	 *
+	 * ディスクキャッシュにあるかもしれないサムネイルは、レンダリングのスレッドに投入する前に入出力用のスレッドで読み込み、
+	 * ディスクキャッシュになかったものだけをレンダリングします。
+	 * 表示範囲が変わった時点で残りの読み込みとレンダリングは取り消されます。
+	 */
+	private void render(List<RenderCache.Key> keys) {
+		// 表示範囲が変わっていなければ、レンダリング中のサムネイルを取り消さないようにします。
+		if (keys.equals(requested)) {
+			return;
+		}
+		requested = keys;
+		long generation = ++renderGeneration;
+		if (keys.isEmpty()) {
+			return;
+		}
+		DiskCache disk = diskCache;
+		if (disk == null || keys.stream().noneMatch(disk::mayContainThumbnail)) {
+			render(keys, generation, disk);
+			return;
+		}
+		service.getIoExecutor().execute(() -> {
+			List<RenderCache.Key> misses = new ArrayList<>();
+			List<RenderCache.Key> batchKeys = new ArrayList<>();
+			List<RenderBuffer> batch = new ArrayList<>();
+			for(RenderCache.Key key : keys) {
+				if (generation != renderGeneration) {
+					break;
+				}
+				RenderBuffer buffer = disk.mayContainThumbnail(key) ? disk.getThumbnail(key, bufferPool) : null;
+				if (buffer == null) {
+					misses.add(key);
+					continue;
+				}
+				cache.put(key, buffer);
+				batchKeys.add(key);
+				batch.add(buffer);
+				if (batch.size() >= BATCH_SIZE) {
+					publish(batchKeys, batch);
+					batchKeys = new ArrayList<>();
+					batch = new ArrayList<>();
+				}
+			}
+			publish(batchKeys, batch);
+			if (generation == renderGeneration && !misses.isEmpty()) {
+				render(misses, generation, disk);
+			}
+		});
+	}
+
+	private void render(List<RenderCache.Key> keys, long generation, DiskCache disk) {
+		scheduler.submit(RenderScheduler.Priority.THUMBNAIL, System.nanoTime(), null, () -> {
+			List<RenderCache.Key> batchKeys = new ArrayList<>();
+			List<RenderBuffer> batch = new ArrayList<>();
+			try {
+				for(RenderCache.Key key : keys) {
+					if (generation != renderGeneration) {
+						break;
+					}
+					if (RenderScheduler.isCancelled()) {
+						throw new CancellationException();
+					}
+					PDDocument document = key.getDocument();
+					RenderBuffer buffer = cache.acquire(key);
+					if (buffer == null) {
+						// PdfView と同じく、このスレッドで使用できる PDDocument を RenderPool から取得してレンダリングします。
+						buffer = renderPool.apply(document, instance -> {
+							if (instance.getDocument().isClosed()) {
+								return null;
+							}
+							int index = key.getPageIndex();
+							Dimension2D paper = PdfView.getPaperSize(instance, index);
+							Dimension2D fitted = PdfView.fit(paper.getWidth(), paper.getHeight(), key.getWidth(), key.getHeight());
+							int w = Math.max(1, (int)fitted.getWidth());
+							int h = Math.max(1, (int)fitted.getHeight());
+							return PdfView.createImage(bufferPool, instance, index, null, w, h, true,
+									() -> generation != renderGeneration || RenderScheduler.isCancelled());
+						});
+						if (buffer == null) {
+							break;
+						}
+						cache.put(key, buffer);
+						if (disk != null) {
+							disk.putThumbnail(key, buffer);
+						}
+					}
+					batchKeys.add(key);
+					batch.add(buffer);
+					if (batch.size() >= BATCH_SIZE) {
+						publish(batchKeys, batch);
+						batchKeys = new ArrayList<>();
+						batch = new ArrayList<>();
+					}
+				}
+			} catch(CancellationException e) {
+				publish(batchKeys, batch);
+				// 表示中のページのレンダリングのために中断した場合は、スケジューラーが後で残りをレンダリングし直します。
+				if (generation == renderGeneration) {
+					throw e;
+				}
+				// 表示範囲が変わったため、レンダリングを中断しました。
+				return;
+			}
+			publish(batchKeys, batch);
+		});
+	}
+
+	private void publish(List<RenderCache.Key> keys, List<RenderBuffer> buffers) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		Platform.runLater(() -> {
+			for(int i = 0; i < keys.size(); i++) {
+				RenderCache.Key key = keys.get(i);
+				RenderBuffer buffer = buffers.get(i);
+				Cell cell = cells.get(key.getPageIndex());
+				if (cell != null && key.getDocument() == getDocument() && cell.view.getUserData() == null) {
+					buffer.update(buffer.getViewport());
+					PdfView.show(cell.view, buffer);
+				} else {
+					buffer.release();
+				}
+			}
+		});
+	}
+
+	private void recycle(Cell cell) {
+		PdfView.show(cell.view, null);
+		cellLayer.getChildren().remove(cell);
+		freeCells.addFirst(cell);
+	}
+
+	private double getOutputScale() {
+		Window window = (getScene() != null) ? getScene().getWindow() : null;
+		return (window != null) ? Math.max(1.0, window.getOutputScaleY()) : 1.0;
+	}
+
+	/** 1 ページ分のサムネイルです。 */
+	private final class Cell extends Region {
+		private final ImageView view = new ImageView();
+		private final Label label = new Label();
+		private int index;
+
+		private Cell() {
+			getStyleClass().add("thumbnail");
+			view.setPreserveRatio(true);
+			getChildren().addAll(view, label);
+			addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
+				setPageIndex(index);
+			});
+		}
+
+		private void setPage(int index) {
+			this.index = index;
+			label.setText(Integer.toString(index + 1));
+		}
+
+		@Override
+		protected void layoutChildren() {
+			double width = getWidth();
+			view.setFitWidth(thumbnailSize);
+			view.setFitHeight(thumbnailSize);
+			double w = view.getLayoutBounds().getWidth();
+			double h = view.getLayoutBounds().getHeight();
+			// ページの縦横比によらず、枠の中央に表示します。
+			view.relocate((width - w) / 2, PADDING + (thumbnailSize - h) / 2);
+			label.resizeRelocate(0.0, PADDING + thumbnailSize, width, LABEL_HEIGHT);
+		}
+	}
+}
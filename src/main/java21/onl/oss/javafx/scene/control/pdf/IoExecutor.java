@@ -0,0 +1,29 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** ドキュメントの読み込みなど、入出力を待つ処理を実行するスレッドを作成します。
+ *
+ * Java 21 以降で使用されるクラスです。処理ごとに仮想スレッドを作成するため、
+ * 低速なネットワーク上のファイルを多数同時に読み込んでもプラットフォームのスレッドを占有しません。
+ */
+final class IoExecutor {
+
+	private static final ExecutorService DEFAULT = create("fx-pdf-io-");
+
+	private IoExecutor() {
+	}
+
+	/** 既定の Executor を返します。すべての {@link RenderService} で共有されます。
+	 *
+	 * @return Executor。
+	 */
+	static ExecutorService getDefault() {
+		return DEFAULT;
+	}
+
+	private static ExecutorService create(String prefix) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+	}
+}
@@ -0,0 +1,106 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link DiskCache} のテストです。
+ *
+ * 書き込みは呼び出したスレッドで行い、読み込みはアプリケーションの再起動と同じく新しい DiskCache で行います。
+ */
+class DiskCacheTest {
+
+	private static final long MAX_BYTES = 16L * 1024L * 1024L;
+
+	@TempDir
+	File directory;
+
+	private PDDocument document;
+	private RenderBufferPool pool;
+
+	@BeforeEach
+	void setUp() {
+		document = new PDDocument();
+		DiskCache.register(document, DiskCache.hash("test".getBytes(StandardCharsets.UTF_8)));
+		pool = new RenderBufferPool(MAX_BYTES);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		document.close();
+	}
+
+	@Test
+	void pageRoundTrip() {
+		RenderCache.Key key = new RenderCache.Key(document, 0, 37, 23, null);
+		RenderBuffer written = fill(pool.acquire(37, 23));
+		new DiskCache(directory, MAX_BYTES, Runnable::run).put(key, written);
+
+		DiskCache cache = new DiskCache(directory, MAX_BYTES, Runnable::run);
+		assertTrue(cache.mayContain(key));
+		RenderBuffer read = cache.get(key, pool);
+		assertNotNull(read);
+		assertSamePixels(written, read);
+		assertNull(cache.getThumbnail(key, pool));
+	}
+
+	@Test
+	void thumbnailRoundTripKeepsFittedSize() {
+		RenderCache.Key key = new RenderCache.Key(document, 2, 120, 120, null);
+		RenderBuffer written = fill(pool.acquire(85, 120));
+		new DiskCache(directory, MAX_BYTES, Runnable::run).putThumbnail(key, written);
+
+		DiskCache cache = new DiskCache(directory, MAX_BYTES, Runnable::run);
+		RenderBuffer read = cache.getThumbnail(key, pool);
+		assertNotNull(read);
+		assertSamePixels(written, read);
+		assertFalse(cache.mayContain(key));
+	}
+
+	@Test
+	void unregisteredDocumentsAreNotCached() {
+		try(PDDocument other = new PDDocument()) {
+			RenderCache.Key key = new RenderCache.Key(other, 0, 8, 8, null);
+			DiskCache cache = new DiskCache(directory, MAX_BYTES, Runnable::run);
+			cache.put(key, fill(pool.acquire(8, 8)));
+			assertFalse(cache.mayContain(key));
+			assertNull(cache.get(key, pool));
+		} catch(IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static RenderBuffer fill(RenderBuffer buffer) {
+		int[] pixels = buffer.getPixels();
+		int scanline = buffer.getCapacityWidth();
+		for(int y = 0; y < buffer.getHeight(); y++) {
+			for(int x = 0; x < buffer.getWidth(); x++) {
+				pixels[y * scanline + x] = 0xFF000000 | (y << 12) | (x * 31);
+			}
+		}
+		return buffer;
+	}
+
+	private static void assertSamePixels(RenderBuffer expected, RenderBuffer actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for(int y = 0; y < expected.getHeight(); y++) {
+			for(int x = 0; x < expected.getWidth(); x++) {
+				assertEquals(expected.getPixels()[y * expected.getCapacityWidth() + x],
+						actual.getPixels()[y * actual.getCapacityWidth() + x], "(" + x + ", " + y + ")");
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link RenderScheduler} のテストです。
+ *
+ * 実行の順序を確かめるため、スレッドが 1 つのスケジューラーを使用します。
+ */
+class RenderSchedulerTest {
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private RenderScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		scheduler = new RenderScheduler(1, "test-render");
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void preemptedWorkIsRequeued() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		List<String> order = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+
+		scheduler.submit(RenderScheduler.Priority.BACKGROUND, System.nanoTime(), null, () -> {
+			if (runs.incrementAndGet() == 1) {
+				started.countDown();
+				// 表示中のページの処理が投入されて中断を求められるまで待ちます。
+				long limit = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+				while (!RenderScheduler.isCancelled() && System.nanoTime() < limit) {
+					Thread.onSpinWait();
+				}
+				order.add("background-preempted");
+				throw new CancellationException();
+			}
+			order.add("background");
+			finished.countDown();
+		});
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		scheduler.submit(RenderScheduler.Priority.VISIBLE, System.nanoTime(), "page", () -> order.add("visible"));
+
+		assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(2, runs.get());
+		assertEquals(Arrays.asList("background-preempted", "visible", "background"), order);
+	}
+
+	@Test
+	void identicalRequestsAreDeduplicated() throws InterruptedException {
+		CountDownLatch release = block();
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch finished = new CountDownLatch(1);
+		Runnable task = () -> {
+			runs.incrementAndGet();
+			finished.countDown();
+		};
+
+		RenderScheduler.Ticket first = scheduler.submit(RenderScheduler.Priority.PREFETCH, System.nanoTime(), "page-1", task);
+		RenderScheduler.Ticket second = scheduler.submit(RenderScheduler.Priority.PREFETCH, System.nanoTime(), "page-1", task);
+		assertSame(first, second);
+
+		release.countDown();
+		assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		drain();
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	void tasksRunInDeadlineOrder() throws InterruptedException {
+		CountDownLatch release = block();
+		List<String> order = new CopyOnWriteArrayList<>();
+		long now = System.nanoTime();
+
+		scheduler.submit(RenderScheduler.Priority.PREFETCH, now + 30, null, () -> order.add("30"));
+		scheduler.submit(RenderScheduler.Priority.PREFETCH, now + 10, null, () -> order.add("10"));
+		scheduler.submit(RenderScheduler.Priority.PREFETCH, now + 20, null, () -> order.add("20"));
+		// 同じキーで期限の早い処理を投入すると、待っている処理の期限が早まります。
+		scheduler.submit(RenderScheduler.Priority.PREFETCH, now + 40, "key", () -> order.add("key"));
+		scheduler.submit(RenderScheduler.Priority.PREFETCH, now + 5, "key", () -> order.add("key"));
+		// 優先度は期限より優先されます。
+		scheduler.submit(RenderScheduler.Priority.BACKGROUND, now, null, () -> order.add("background"));
+
+		release.countDown();
+		drain();
+		assertEquals(Arrays.asList("key", "10", "20", "30", "background"), order);
+	}
+
+	/** スケジューラーのスレッドを処理で塞ぎ、返された CountDownLatch を減らすまで待たせます。
+	 *
+	 */
+	private CountDownLatch block() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.submit(RenderScheduler.Priority.VISIBLE, System.nanoTime(), null, () -> {
+			started.countDown();
+			try {
+				release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch(InterruptedException ignore) {
+			}
+		});
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		return release;
+	}
+
+	/** それまでに投入した処理がすべて実行されるまで待ちます。
+	 *
+	 */
+	private void drain() throws InterruptedException {
+		CountDownLatch drained = new CountDownLatch(1);
+		scheduler.submit(RenderScheduler.Priority.BACKGROUND, System.nanoTime() + TimeUnit.HOURS.toNanos(1), null, drained::countDown);
+		assertTrue(drained.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,58 @@
+package onl.oss.javafx.scene.control.pdf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** {@link TextIndex} のテストです。
+ *
+ */
+class TextIndexTest {
+
+	private TextIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new TextIndex(null, 5);
+		index.add(0, page("the quick brown fox"));
+		index.add(1, page("quack and quick"));
+		index.add(2, page("quiet ick"));
+		index.add(3, page("nothing here"));
+		index.add(4, page("quickly"));
+	}
+
+	@Test
+	void candidatesContainEveryBigramOfTheQuery() {
+		// 「qu」「ui」「ic」「ck」をすべて含むページです。検索語が連続して現れないページも候補になります。
+		assertArrayEquals(new int[] { 0, 1, 2, 4 }, index.findCandidates("quick"));
+	}
+
+	@Test
+	void candidatesAreEmptyWhenABigramIsMissing() {
+		assertArrayEquals(new int[0], index.findCandidates("quiz"));
+	}
+
+	@Test
+	void shortQueriesMatchEveryIndexedPage() {
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, index.findCandidates("q"));
+	}
+
+	@Test
+	void searchReturnsOnlyPagesContainingTheQuery() {
+		int[] pages = index.search("QUICK").stream().mapToInt(SearchHit::getPageIndex).toArray();
+		assertArrayEquals(new int[] { 0, 1, 4 }, pages);
+		assertEquals(0, index.search("quiz").size());
+	}
+
+	/** 文字の位置を持たないページのテキストを作成します。 */
+	private static TextIndex.PageText page(String text) {
+		String normalized = TextIndex.normalize(text);
+		float[] positions = new float[normalized.length()];
+		Arrays.fill(positions, Float.NaN);
+		return new TextIndex.PageText(normalized, positions, positions, new int[0], new float[0], new float[0], 0, 0.0f, 0.0f);
+	}
+}